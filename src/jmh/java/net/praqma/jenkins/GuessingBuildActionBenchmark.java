@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.util.XStream2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The build record format of {@link GuessingBuildAction}, before and after {@link GuessingBuildAction.ConverterImpl}.
+ *
+ * The format parameter picks the record loaded and how:
+ * <ul>
+ * <li>fields: one child element per field, read by reflection, as every build was before the converter</li>
+ * <li>legacy: the same record read by the converter, as old builds are after upgrading</li>
+ * <li>packed: one attribute per guess, read by the converter, as builds are saved now</li>
+ * </ul>
+ * {@link #load()} is the unmarshal time. The size of each record, in total and per guess, is printed in the setup,
+ * so a run reports both.
+ *
+ * @author Praqma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuessingBuildActionBenchmark {
+
+    @Param({"10", "10000"})
+    public int guesses;
+
+    @Param({"fields", "legacy", "packed"})
+    public String format;
+
+    private XStream2 xstream;
+    private String record;
+
+    @Setup
+    public void setUp() {
+        XStream2 fields = new XStream2();
+        XStream2 compact = new XStream2();
+        compact.registerConverter(new GuessingBuildAction.ConverterImpl());
+
+        GuessingRandom rnd = new GuessingRandom(42);
+        List<GuessingBuildAction> actions = new ArrayList<GuessingBuildAction>();
+        for (int i = 0; i < guesses; i++) {
+            int g = rnd.nextInt(1, 6);
+            int n = rnd.nextInt(1, 6);
+            actions.add(new GuessingBuildAction(i + 1, g, n, g == n));
+        }
+
+        record = "packed".equals(format) ? compact.toXML(actions) : fields.toXML(actions);
+        xstream = "fields".equals(format) ? fields : compact;
+        System.out.println(String.format("%s record of %s guesses: %s bytes, %s per guess",
+                format, guesses, record.length(), record.length() / guesses));
+    }
+
+    @Benchmark
+    public Object load() {
+        return xstream.fromXML(record);
+    }
+}
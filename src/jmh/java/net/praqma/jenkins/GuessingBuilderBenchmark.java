@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.model.Descriptor;
+import hudson.model.Saveable;
+import hudson.tasks.Publisher;
+import hudson.util.DescribableList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link GuessingBuilder#perform} playing the given number of rounds in a fresh build: a single guess for 1, a batch
+ * otherwise. This includes everything perform does, the column store, the build summary and the live events.
+ *
+ * The build is replayed with a fixed {@value GuessingSeedAction#PARAMETER}, so no seed source needs to be looked up, and
+ * its project already has its {@link GuessingRecorder}, like every build after the first. Each iteration gets a new
+ * project directory, so the column store does not grow across the whole run.
+ *
+ * @author Praqma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class GuessingBuilderBenchmark {
+
+    @Param({"1", "10", "10000", "1000000"})
+    public int rounds;
+
+    private GuessingBuilder builder;
+    private AbstractBuild build;
+    private BuildListener listener;
+    private File jenkinsDir;
+    private volatile File rootDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        jenkinsDir = Util.createTempDir();
+        SyntheticBuilds.jenkins(jenkinsDir);
+        builder = new GuessingBuilder(1, 6, rounds);
+        listener = SyntheticBuilds.listener();
+
+        AbstractProject project = mock(AbstractProject.class, withSettings().stubOnly());
+        when(project.getRootDir()).thenAnswer(new Answer<File>() {
+            @Override
+            public File answer(InvocationOnMock invocation) {
+                return rootDir;
+            }
+        });
+        when(project.getFullName()).thenReturn("benchmark");
+        DescribableList<Publisher, Descriptor<Publisher>> publishers = new DescribableList<Publisher, Descriptor<Publisher>>(Saveable.NOOP);
+        publishers.add(new GuessingRecorder());
+        when(project.getPublishersList()).thenReturn(publishers);
+
+        build = mock(AbstractBuild.class, withSettings().stubOnly());
+        when(build.getProject()).thenReturn(project);
+        when(build.getNumber()).thenReturn(1);
+        when(build.getBuildVariables()).thenReturn(Collections.singletonMap(GuessingSeedAction.PARAMETER, "42"));
+    }
+
+    @Setup(Level.Iteration)
+    public void createProjectDir() throws IOException {
+        rootDir = Util.createTempDir();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteProjectDir() throws IOException, InterruptedException {
+        Util.deleteRecursive(rootDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        Util.deleteRecursive(jenkinsDir);
+    }
+
+    @Benchmark
+    public boolean perform() throws InterruptedException, IOException {
+        return builder.perform(build, null, listener);
+    }
+}
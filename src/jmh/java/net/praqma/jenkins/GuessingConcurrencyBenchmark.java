@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import static org.mockito.Mockito.when;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Descriptor;
+import hudson.model.Saveable;
+import hudson.tasks.Publisher;
+import hudson.util.DescribableList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Many builds of one project completing at the same time, on as many threads as a master has executors.
+ *
+ * Each invocation is one build: the builder registering its {@link GuessingRecorder}, and the project statistics
+ * recording the build. JMH reports the builds per millisecond and the latency percentiles. After every iteration the
+ * statistics are checked against the guesses of all builds run, so the run fails if a count was lost.
+ *
+ * The project is a mock whose save does nothing, so this measures the contention on the statistics, not whether the
+ * recorder is registered once. GuessingBuilderTest checks that against a running Jenkins.
+ *
+ * The global {@link GuessingCounters} are left out, {@link GuessingRunListenerBenchmark} covers their striped
+ * counters. The stub Jenkins instance is only there for the leaderboard updated when the statistics are rebuilt.
+ *
+ * @author Praqma
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class GuessingConcurrencyBenchmark {
+
+    private static final int BUILDS = 64;
+
+    @Param({"1", "1000"})
+    public int guesses;
+
+    private File jenkinsDir;
+    private File rootDir;
+    private AbstractProject project;
+    private DescribableList<Publisher, Descriptor<Publisher>> publishers;
+    private GuessingStatistics statistics;
+
+    private final AbstractBuild[] builds = new AbstractBuild[BUILDS];
+    private final int[][] counts = new int[BUILDS][];
+
+    private final AtomicLong expectedCorrect = new AtomicLong();
+    private final AtomicLong expectedIncorrect = new AtomicLong();
+
+    /**
+     * The builds a thread runs, one after the other.
+     */
+    @State(Scope.Thread)
+    public static class Executor {
+        private int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        jenkinsDir = Util.createTempDir();
+        SyntheticBuilds.jenkins(jenkinsDir);
+        rootDir = Util.createTempDir();
+        project = SyntheticBuilds.project(rootDir, 0, 0);
+        publishers = new DescribableList<Publisher, Descriptor<Publisher>>(Saveable.NOOP);
+        when(project.getPublishersList()).thenReturn(publishers);
+
+        for (int i = 0; i < BUILDS; i++) {
+            builds[i] = SyntheticBuilds.build(guesses, guesses > 1, i);
+            counts[i] = GuessingStatistics.count(builds[i]);
+        }
+
+        statistics = GuessingStatistics.get(project);
+        while (statistics.getRebuildProgress() != null) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void removeRecorder() {
+        publishers.clear();
+    }
+
+    @TearDown(Level.Iteration)
+    public void verify() {
+        if (publishers.getAll(GuessingRecorder.class).size() != 1) {
+            throw new IllegalStateException(publishers.getAll(GuessingRecorder.class).size() + " recorders registered");
+        }
+        if (statistics.getCorrect() != expectedCorrect.get() || statistics.getIncorrect() != expectedIncorrect.get()) {
+            throw new IllegalStateException(String.format("Recorded %s correct and %s incorrect guesses, expected %s and %s",
+                    statistics.getCorrect(), statistics.getIncorrect(), expectedCorrect.get(), expectedIncorrect.get()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        Util.deleteRecursive(rootDir);
+        Util.deleteRecursive(jenkinsDir);
+    }
+
+    @Benchmark
+    public void build(Executor executor) throws IOException {
+        int i = executor.next++ & (BUILDS - 1);
+        GuessingBuilder.addRecorder(project);
+        GuessingStatistics.get(project).record(builds[i]);
+        expectedCorrect.addAndGet(counts[i][0]);
+        expectedIncorrect.addAndGet(counts[i][1]);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.Util;
+import hudson.model.AbstractProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The statistics shown by {@link GuessingProjectAction} for a project whose history holds the given number of guesses.
+ *
+ * {@link #statistics()} is what every page view costs once the statistics are in memory. {@link #loadStatistics()}
+ * is the first view after a restart, reading the statistics file. {@link #scanRecords()} is the scan of the build
+ * records done in the background when the statistics file is missing.
+ *
+ * @author Praqma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuessingProjectActionBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int guesses;
+
+    @Param({"10", "1000"})
+    public int builds;
+
+    private File jenkinsDir;
+    private File rootDir;
+    private AbstractProject<?, ?> project;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        jenkinsDir = Util.createTempDir();
+        SyntheticBuilds.jenkins(jenkinsDir);
+        rootDir = Util.createTempDir();
+        project = SyntheticBuilds.project(rootDir, guesses, builds);
+
+        // Measure complete statistics, and have them saved for loadStatistics
+        GuessingStatistics statistics = GuessingStatistics.get(project);
+        while (statistics.getRebuildProgress() != null) {
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Util.deleteRecursive(rootDir);
+        Util.deleteRecursive(jenkinsDir);
+    }
+
+    @Benchmark
+    public long statistics() {
+        GuessingProjectAction action = new GuessingProjectAction(project);
+        return action.getLocalCorrect() + action.getLocalIncorrect();
+    }
+
+    @Benchmark
+    public long loadStatistics() {
+        GuessingStatistics statistics = GuessingStatistics.load(project);
+        return statistics.getCorrect() + statistics.getIncorrect();
+    }
+
+    @Benchmark
+    public int scanRecords() throws InterruptedException {
+        return GuessingBuildScanner.scan(project.getBuildDir(), Collections.<Integer>emptySet(), Integer.MAX_VALUE,
+                new GuessingBuildScanner.Progress()).size();
+    }
+}
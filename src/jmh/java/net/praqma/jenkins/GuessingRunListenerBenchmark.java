@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import static org.mockito.Mockito.when;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.TaskListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link GuessingRunListener#onCompleted} for builds of one project completing at once: the global counters, the
+ * project statistics and their file, the leaderboard and the live totals.
+ *
+ * @author Praqma
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class GuessingRunListenerBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int guesses;
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    private final GuessingRunListener runListener = new GuessingRunListener();
+    private File jenkinsDir;
+    private File rootDir;
+    private AbstractBuild build;
+    private TaskListener listener;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        jenkinsDir = Util.createTempDir();
+        SyntheticBuilds.jenkins(jenkinsDir);
+        rootDir = Util.createTempDir();
+        AbstractProject project = SyntheticBuilds.project(rootDir, 0, 0);
+        build = SyntheticBuilds.build(guesses, batched, 42);
+        when(build.getProject()).thenReturn(project);
+        when(build.getNumber()).thenReturn(1);
+        listener = SyntheticBuilds.listener();
+
+        // Start from saved statistics, not from a rebuild
+        GuessingStatistics statistics = GuessingStatistics.get(project);
+        while (statistics.getRebuildProgress() != null) {
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        Util.deleteRecursive(rootDir);
+        Util.deleteRecursive(jenkinsDir);
+    }
+
+    @Benchmark
+    public void onCompleted() {
+        runListener.onCompleted(build, listener);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of the random numbers of one guessing step: picking the seed of the build with each
+ * {@link GuessingSeedSource} and drawing the guess and the number with {@link GuessingRandom}, against the two
+ * java.util.Random instances the builder used to create. The sources only differ in picking the seed.
+ *
+ * The contended variant runs on 8 threads, like builds on 8 executors. Run it on a machine with at least as many
+ * cores, or the threads only take turns.
+ *
+ * @author Praqma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuessingSeedSourceBenchmark {
+
+    /**
+     * A seed source name, or RANDOM for two new java.util.Random instances.
+     */
+    @Param({"RANDOM", "THREAD_LOCAL", "SPLITTABLE", "SEEDED"})
+    public String source;
+
+    private GuessingSeedSource selected;
+    private int build;
+
+    @Setup
+    public void setUp() {
+        selected = "RANDOM".equals(source) ? null : GuessingSeedSource.valueOf(source);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int uncontended() {
+        return step();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int contended() {
+        return step();
+    }
+
+    private int step() {
+        if (selected == null) {
+            int guess = new Random().nextInt(6) + 1;
+            int number = new Random().nextInt(6) + 1;
+            return guess ^ number;
+        }
+        GuessingRandom rnd = new GuessingRandom(selected.nextSeed(42, "job", build++));
+        return rnd.nextInt(1, 6) ^ rnd.nextInt(1, 6);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import hudson.ExtensionList;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.model.Computer;
+import hudson.model.RootAction;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import jenkins.model.Jenkins;
+
+/**
+ * Builds and projects for the benchmarks, mocked so they run without a Jenkins instance. The mocks do not record
+ * their invocations, so they can be called from many threads for as long as a benchmark runs.
+ *
+ * Code looking up the Jenkins instance gets the stub installed by {@link #jenkins(File)}.
+ *
+ * @author Praqma
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+final class SyntheticBuilds {
+
+    private SyntheticBuilds() { }
+
+    /**
+     * @param guesses the number of guesses in the build
+     * @param batched whether the guesses are stored in a single {@link GuessingBatchAction}
+     * @param seed the seed of the guesses
+     * @return a completed build, with the {@link GuessingBuildSummary} the builder would have added
+     */
+    static AbstractBuild build(int guesses, boolean batched, long seed) {
+        GuessingRandom rnd = new GuessingRandom(seed);
+        List<GuessingBuildAction> singles = new ArrayList<GuessingBuildAction>();
+        List<GuessingBatchAction> batches = new ArrayList<GuessingBatchAction>();
+        if (batched) {
+            int[] g = new int[guesses];
+            int[] n = new int[guesses];
+            for (int i = 0; i < guesses; i++) {
+                g[i] = rnd.nextInt(1, 6);
+                n[i] = rnd.nextInt(1, 6);
+            }
+            batches.add(new GuessingBatchAction(1, g, n));
+        } else {
+            for (int i = 0; i < guesses; i++) {
+                int g = rnd.nextInt(1, 6);
+                int n = rnd.nextInt(1, 6);
+                singles.add(new GuessingBuildAction(i + 1, g, n, g == n));
+            }
+        }
+
+        AbstractBuild build = mock(AbstractBuild.class, withSettings().stubOnly());
+        when(build.getActions(GuessingBuildAction.class)).thenReturn(singles);
+        when(build.getActions(GuessingBatchAction.class)).thenReturn(batches);
+        when(build.getAction(GuessingBuildSummary.class)).thenReturn(GuessingBuildSummary.count(build));
+        return build;
+    }
+
+    /**
+     * @param rootDir the directory of the project
+     * @param guesses the total number of guesses, spread evenly over the builds
+     * @param builds the number of builds
+     * @return a project with the given history
+     */
+    static AbstractProject project(File rootDir, int guesses, int builds) throws IOException {
+        File buildDir = new File(rootDir, "builds");
+        AbstractBuild previous = null;
+        for (int i = 0; i < builds; i++) {
+            int inBuild = guesses / builds + (i < guesses % builds ? 1 : 0);
+            AbstractBuild build = build(inBuild, false, i);
+            when(build.getNumber()).thenReturn(i + 1);
+            when(build.getPreviousBuild()).thenReturn(previous);
+            writeRecord(new File(buildDir, String.valueOf(i + 1)), build);
+            previous = build;
+        }
+
+        AbstractProject project = mock(AbstractProject.class, withSettings().stubOnly());
+        when(project.getRootDir()).thenReturn(rootDir);
+        when(project.getBuildDir()).thenReturn(buildDir);
+        when(project.getFullName()).thenReturn(rootDir.getName());
+        when(project.getLastCompletedBuild()).thenReturn(previous);
+        when(project.getNextBuildNumber()).thenReturn(builds + 1);
+        return project;
+    }
+
+    /**
+     * Writes the part of a build record {@link GuessingBuildScanner} reads.
+     */
+    private static void writeRecord(File dir, AbstractBuild build) throws IOException {
+        if (!dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        Writer out = new OutputStreamWriter(new FileOutputStream(new File(dir, "build.xml")), "UTF-8");
+        try {
+            out.write("<?xml version='1.0' encoding='UTF-8'?>\n<build>\n  <actions>\n");
+            for (Object action : build.getActions(GuessingBuildAction.class)) {
+                GuessingBuildAction guess = (GuessingBuildAction) action;
+                out.write("    <" + GuessingBuildAction.class.getName() + " " + GuessingBuildAction.ConverterImpl.ATTRIBUTE + "=\"" + guess.getIndex()
+                        + "," + guess.getGuess() + "," + guess.getNumber() + "," + (guess.isCorrect() ? 1 : 0) + "\"/>\n");
+            }
+            out.write("  </actions>\n  <number>" + build.getNumber() + "</number>\n</build>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Installs a stub as the Jenkins instance, with only what the plugin looks up: its root directory, the
+     * {@link GuessingLeaderboard} and no computers, so no build is seen running.
+     *
+     * @param rootDir the directory standing in for JENKINS_HOME
+     * @return the stub
+     */
+    static Jenkins jenkins(File rootDir) {
+        Jenkins jenkins = mock(Jenkins.class, withSettings().stubOnly());
+        when(jenkins.getRootDir()).thenReturn(rootDir);
+        when(jenkins.getComputers()).thenReturn(new Computer[0]);
+        ExtensionList rootActions = mock(ExtensionList.class, withSettings().stubOnly());
+        when(rootActions.get(GuessingLeaderboard.class)).thenReturn(new GuessingLeaderboard());
+        when(jenkins.getExtensionList(RootAction.class)).thenReturn(rootActions);
+        try {
+            Field instance = Jenkins.class.getDeclaredField("theInstance");
+            instance.setAccessible(true);
+            instance.set(null, jenkins);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot install the Jenkins stub", e);
+        }
+        return jenkins;
+    }
+
+    /**
+     * @return a listener discarding everything written to it
+     */
+    static BuildListener listener() {
+        BuildListener listener = mock(BuildListener.class, withSettings().stubOnly());
+        when(listener.getLogger()).thenReturn(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) { }
+
+            @Override
+            public void write(byte[] b, int off, int len) { }
+        }));
+        return listener;
+    }
+}
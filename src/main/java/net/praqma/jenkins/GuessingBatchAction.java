@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.model.Action;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.List;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * All rounds played by one {@link GuessingBuilder} step in batch mode.
+ *
+ * Adding a {@link GuessingBuildAction} per round makes build.xml, and the time it takes to load it, grow with the
+ * number of rounds. This action keeps the rounds in two primitive arrays instead, and persists them as a single
+ * packed value.
+ *
+ * Each round is still reachable as a {@link GuessingBuildAction}, both from code through {@link #getGuesses()} and
+ * from the web through the URL of this action followed by the usual guessN URL of the round.
+ *
+ * @author Praqma
+ */
+public class GuessingBatchAction implements Action {
+
+    /**
+     * The most rounds in a batch. The packed value takes 8 bytes per round and has to fit in an array.
+     */
+    public static final int MAX_ROUNDS = 10000000;
+
+    private int firstIndex;
+
+    /**
+     * The guesses followed by the rolled numbers, 4 bytes each. XStream writes this as a single base64 element.
+     */
+    private byte[] packed;
+
+    private transient int[] guesses;
+    private transient int[] numbers;
+    private transient int correct;
+
+    /**
+     * @param firstIndex the index of the first round, following the guesses already made in the build
+     * @param guesses the guesses, one per round, at most {@link #MAX_ROUNDS}
+     * @param numbers the rolled numbers, one per round
+     */
+    public GuessingBatchAction(int firstIndex, int[] guesses, int[] numbers) {
+        if (guesses.length != numbers.length) {
+            throw new IllegalArgumentException("Got " + guesses.length + " guesses but " + numbers.length + " numbers");
+        }
+        if (guesses.length > MAX_ROUNDS) {
+            throw new IllegalArgumentException("Got " + guesses.length + " rounds, at most " + MAX_ROUNDS + " fit in a batch");
+        }
+        this.firstIndex = firstIndex;
+        this.guesses = guesses;
+        this.numbers = numbers;
+
+        ByteBuffer buffer = ByteBuffer.allocate(guesses.length * 8);
+        buffer.asIntBuffer().put(guesses).put(numbers);
+        this.packed = buffer.array();
+        countCorrect();
+    }
+
+    private Object readResolve() {
+        IntBuffer buffer = ByteBuffer.wrap(packed).asIntBuffer();
+        int rounds = buffer.remaining() / 2;
+        guesses = new int[rounds];
+        numbers = new int[rounds];
+        buffer.get(guesses).get(numbers);
+        countCorrect();
+        return this;
+    }
+
+    private void countCorrect() {
+        int count = 0;
+        for (int i = 0; i < guesses.length; i++) {
+            if (guesses[i] == numbers[i]) {
+                count++;
+            }
+        }
+        correct = count;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/guessing-game/images/64x64/guess.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return String.format("Guesses %s-%s", firstIndex, getLastIndex());
+    }
+
+    @Override
+    public String getUrlName() {
+        return "guesses" + firstIndex;
+    }
+
+    /**
+     * Serves the rounds of this batch under their guessN URL.
+     */
+    public Object getDynamic(String token, StaplerRequest req, StaplerResponse rsp) {
+        if (token.startsWith("guess")) {
+            try {
+                int index = Integer.parseInt(token.substring("guess".length()));
+                if (index >= firstIndex && index <= getLastIndex()) {
+                    return getGuess(index - firstIndex);
+                }
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        return null;
+    }
+
+    public int getFirstIndex() {
+        return firstIndex;
+    }
+
+    public int getLastIndex() {
+        return firstIndex + guesses.length - 1;
+    }
+
+    /**
+     * @return the number of rounds in this batch
+     */
+    public int size() {
+        return guesses.length;
+    }
+
+    public int getCorrectCount() {
+        return correct;
+    }
+
+    public int getIncorrectCount() {
+        return guesses.length - correct;
+    }
+
+    /**
+     * @param round the round, counting from 0
+     * @return the given round as a build action
+     */
+    public GuessingBuildAction getGuess(int round) {
+        return new GuessingBuildAction(firstIndex + round, guesses[round], numbers[round], guesses[round] == numbers[round]);
+    }
+
+    /**
+     * @return a view of all rounds, creating the {@link GuessingBuildAction}s as they are accessed
+     */
+    public List<GuessingBuildAction> getGuesses() {
+        return new AbstractList<GuessingBuildAction>() {
+            @Override
+            public GuessingBuildAction get(int round) {
+                return getGuess(round);
+            }
+
+            @Override
+            public int size() {
+                return guesses.length;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return getGuesses().toString();
+    }
+}
@@ -23,8 +23,23 @@
  */
 package net.praqma.jenkins;
 
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.model.Action;
+import hudson.model.Run;
 
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 /**
  *
@@ -36,6 +51,8 @@ import hudson.model.Action;
  *
  * In our example we will re-use the same action through the entire build pipeline.
  *
+ * In build.xml the action is stored as a single attribute, see {@link ConverterImpl}.
+ *
  * @author Praqma
  */
 public class GuessingBuildAction implements Action {
@@ -73,6 +90,13 @@ public class GuessingBuildAction implements Action {
         return "guess" + index;
     }
 
+    /**
+     * @return the index of the guess within its build, counting from 1
+     */
+    public int getIndex() {
+        return index;
+    }
+
     /**
      * @return the correct
      */
@@ -115,9 +139,99 @@ public class GuessingBuildAction implements Action {
         this.number = number;
     }
 
+    /**
+     * Serves guessN/ with an ETag and Last-Modified date from the build it belongs to. A guess never changes once its
+     * build has completed, so from then on the page is answered with 304 Not Modified.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException
+     * @throws ServletException
+     */
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        Run<?, ?> run = req.findAncestorObject(Run.class);
+        if (run == null || run.isBuilding()) {
+            req.getView(this, "index.jelly").forward(req, rsp);
+        } else {
+            GuessingHttpCache.serveIndex(this, run, req, rsp);
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("%s - %s - %s", guess, number, correct);
     }
 
+    /**
+     * Registers {@link ConverterImpl} before any build is loaded.
+     */
+    @Initializer(before = InitMilestone.PLUGINS_STARTED)
+    public static void registerConverter() {
+        Run.XSTREAM2.registerConverter(new ConverterImpl());
+    }
+
+    /**
+     * Writes the action as <code>&lt;net.praqma.jenkins.GuessingBuildAction v="index,guess,number,correct"/&gt;</code>,
+     * with correct as 1 or 0, instead of one child element per field. Records written before still have the child
+     * elements, and are read as well.
+     */
+    public static class ConverterImpl implements Converter {
+
+        static final String ATTRIBUTE = "v";
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public boolean canConvert(Class type) {
+            return type == GuessingBuildAction.class;
+        }
+
+        @Override
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+            GuessingBuildAction action = (GuessingBuildAction) source;
+            writer.addAttribute(ATTRIBUTE, action.index + "," + action.guess + "," + action.number + "," + (action.correct ? 1 : 0));
+        }
+
+        @Override
+        public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+            GuessingBuildAction action = new GuessingBuildAction();
+            String packed = reader.getAttribute(ATTRIBUTE);
+            if (packed != null) {
+                String[] values = packed.split(",");
+                if (values.length != 4) {
+                    throw new ConversionException("Malformed guess: " + packed);
+                }
+                try {
+                    action.index = Integer.parseInt(values[0]);
+                    action.guess = Integer.parseInt(values[1]);
+                    action.number = Integer.parseInt(values[2]);
+                } catch (NumberFormatException e) {
+                    throw new ConversionException("Malformed guess: " + packed, e);
+                }
+                action.correct = "1".equals(values[3]);
+                return action;
+            }
+
+            while (reader.hasMoreChildren()) {
+                reader.moveDown();
+                String name = reader.getNodeName();
+                String value = reader.getValue().trim();
+                try {
+                    if ("index".equals(name)) {
+                        action.index = Integer.parseInt(value);
+                    } else if ("guess".equals(name)) {
+                        action.guess = Integer.parseInt(value);
+                    } else if ("number".equals(name)) {
+                        action.number = Integer.parseInt(value);
+                    } else if ("correct".equals(name)) {
+                        action.correct = Boolean.parseBoolean(value);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new ConversionException("Malformed " + name + " of a guess: " + value, e);
+                }
+                reader.moveUp();
+            }
+            return action;
+        }
+    }
+
 }
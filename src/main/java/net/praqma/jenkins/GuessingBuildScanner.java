@@ -0,0 +1,313 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.Util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Counts the guesses of a project's builds straight from their build.xml files.
+ *
+ * Loading a build through Jenkins unmarshals its whole record with XStream. When the statistics of a project have to
+ * be rebuilt, this reads the build records with a streaming parser instead, and only looks at the elements of
+ * {@link GuessingBuildAction} and {@link GuessingBatchAction}. The build directories are read in parallel on a small
+ * pool of background threads.
+ *
+ * @author Praqma
+ */
+final class GuessingBuildScanner {
+
+    private static final Logger LOGGER = Logger.getLogger(GuessingBuildScanner.class.getName());
+
+    private static final String SINGLE = GuessingBuildAction.class.getName();
+    private static final String BATCH = GuessingBatchAction.class.getName();
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Reads the build records. Its threads go away when there is nothing to scan.
+     */
+    static final ExecutorService WORKERS = daemonPool("Guessing statistics scanner", Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    /**
+     * Runs the rebuilds, each waiting for its scan to finish on {@link #WORKERS}.
+     */
+    static final ExecutorService COORDINATORS = daemonPool("Guessing statistics rebuild", 2);
+
+    private GuessingBuildScanner() { }
+
+    private static ExecutorService daemonPool(final String name, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + " " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * The progress of a scan.
+     */
+    static final class Progress {
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger scanned = new AtomicInteger();
+
+        public int getTotal() {
+            return total.get();
+        }
+
+        public int getScanned() {
+            return scanned.get();
+        }
+
+        /**
+         * @return the share of the builds scanned so far, between 0 and 100
+         */
+        public int getPercentage() {
+            int t = total.get();
+            return t == 0 ? 0 : scanned.get() * 100 / t;
+        }
+    }
+
+    /**
+     * Scans all build directories of a project.
+     *
+     * @param buildsDir the builds directory of the project
+     * @param skip the numbers of builds to leave out, like those still running
+     * @param below only builds numbered below this are scanned
+     * @param progress updated as the builds are scanned
+     * @return the number of correct and incorrect guesses of each build with guesses and when it completed, in
+     * milliseconds since the epoch, by build number
+     * @throws InterruptedException if interrupted while waiting for the scan, which is then cancelled
+     */
+    static SortedMap<Integer, long[]> scan(File buildsDir, Set<Integer> skip, int below, Progress progress) throws InterruptedException {
+        File[] dirs = buildsDir.listFiles();
+        List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+        if (dirs != null) {
+            for (final File dir : dirs) {
+                if (!dir.isDirectory() || isSymlink(dir)) {
+                    // Builds of Jenkins 1.596 and older are linked to by number
+                    continue;
+                }
+                futures.add(WORKERS.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() throws Exception {
+                        return parse(dir);
+                    }
+                }));
+            }
+        }
+        progress.total.set(futures.size());
+
+        SortedMap<Integer, long[]> builds = new TreeMap<Integer, long[]>();
+        try {
+            for (Future<long[]> future : futures) {
+                try {
+                    long[] build = future.get();
+                    if (build != null && build[0] > 0 && build[0] < below && !skip.contains((int) build[0]) && build[1] + build[2] > 0) {
+                        builds.put((int) build[0], new long[] { build[1], build[2], build[3] + build[4] });
+                    }
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.WARNING, "Failed to scan a build record in " + buildsDir, e.getCause());
+                }
+                progress.scanned.incrementAndGet();
+            }
+        } finally {
+            for (Future<long[]> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return builds;
+    }
+
+    private static boolean isSymlink(File dir) {
+        try {
+            return Util.isSymlink(dir);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param dir a build directory
+     * @return the build number, the number of correct and the number of incorrect guesses, the start time and the
+     * duration of the build, or null if the directory holds no build record
+     */
+    static long[] parse(File dir) throws IOException, XMLStreamException {
+        File file = new File(dir, "build.xml");
+        if (!file.isFile()) {
+            return null;
+        }
+        long[] build = new long[5];
+        try {
+            build[0] = Integer.parseInt(dir.getName());
+        } catch (NumberFormatException e) {
+            // Jenkins 1.596 and older name build directories by their id, the number is in the record
+            build[0] = -1;
+        }
+
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+            try {
+                parse(reader, build);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            in.close();
+        }
+        return build;
+    }
+
+    private static void parse(XMLStreamReader reader, long[] build) throws XMLStreamException {
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (depth == 1 && "number".equals(name)) {
+                    int number = Integer.parseInt(reader.getElementText().trim());
+                    if (build[0] < 0) {
+                        build[0] = number;
+                    }
+                } else if (depth == 1 && "timestamp".equals(name)) {
+                    build[3] = Long.parseLong(reader.getElementText().trim());
+                } else if (depth == 1 && "duration".equals(name)) {
+                    build[4] = Long.parseLong(reader.getElementText().trim());
+                } else if (SINGLE.equals(name)) {
+                    if (parseSingle(reader)) {
+                        build[1]++;
+                    } else {
+                        build[2]++;
+                    }
+                } else if (BATCH.equals(name)) {
+                    int correct = parseBatch(reader, build);
+                    build[1] += correct;
+                } else {
+                    depth++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a {@link GuessingBuildAction}, in either of the formats read by {@link GuessingBuildAction.ConverterImpl},
+     * up to and including its end element.
+     *
+     * @return whether the guess was correct
+     */
+    private static boolean parseSingle(XMLStreamReader reader) throws XMLStreamException {
+        String packed = reader.getAttributeValue(null, GuessingBuildAction.ConverterImpl.ATTRIBUTE);
+        boolean correct = packed != null && packed.endsWith(",1");
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 1 && "correct".equals(reader.getLocalName())) {
+                    correct = Boolean.parseBoolean(reader.getElementText().trim());
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return correct;
+    }
+
+    /**
+     * Reads a {@link GuessingBatchAction}, up to and including its end element, and adds its incorrect rounds to the
+     * build.
+     *
+     * @return the number of correct rounds
+     */
+    private static int parseBatch(XMLStreamReader reader, long[] build) throws XMLStreamException {
+        int correct = 0;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 1 && "packed".equals(reader.getLocalName())) {
+                    IntBuffer packed = ByteBuffer.wrap(Base64.decodeBase64(reader.getElementText().trim())).asIntBuffer();
+                    int rounds = packed.remaining() / 2;
+                    for (int i = 0; i < rounds; i++) {
+                        if (packed.get(i) == packed.get(rounds + i)) {
+                            correct++;
+                        }
+                    }
+                    build[2] += rounds - correct;
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return correct;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.model.AbstractBuild;
+import hudson.model.InvisibleAction;
+
+/**
+ * The number of correct and incorrect guesses of a build, kept up to date by {@link GuessingBuilder} as it plays.
+ *
+ * The builder, the recorder, the run listener and the views all need these numbers. Reading them here saves each
+ * of them filtering the actions of the build for every {@link GuessingBuildAction} and {@link GuessingBatchAction}.
+ *
+ * @author Praqma
+ */
+public class GuessingBuildSummary extends InvisibleAction {
+
+    private int correct;
+    private int incorrect;
+
+    GuessingBuildSummary(int correct, int incorrect) {
+        this.correct = correct;
+        this.incorrect = incorrect;
+    }
+
+    /**
+     * Returns the summary of the build. Builds recorded before summaries were kept have their guesses counted on every
+     * call. Reading never adds the summary to the build, so views, the listener and the leaderboard do not change
+     * builds they only look at. Only {@link #record(AbstractBuild, int, int)} does, while the builder plays.
+     *
+     * @param build the build
+     * @return the summary of the build
+     */
+    static GuessingBuildSummary get(AbstractBuild<?,?> build) {
+        GuessingBuildSummary summary = build.getAction(GuessingBuildSummary.class);
+        return summary != null ? summary : count(build);
+    }
+
+    /**
+     * Adds guesses just added to the build to its summary.
+     *
+     * @param build the build
+     * @param correct the number of correct guesses added
+     * @param incorrect the number of incorrect guesses added
+     */
+    static void record(AbstractBuild<?,?> build, int correct, int incorrect) {
+        synchronized (build) {
+            GuessingBuildSummary summary = build.getAction(GuessingBuildSummary.class);
+            if (summary == null) {
+                // The first guesses of the build, already among its actions
+                build.addAction(count(build));
+            } else {
+                summary.add(correct, incorrect);
+            }
+        }
+    }
+
+    /**
+     * @param build the build
+     * @return a summary of the guesses among the actions of the build, not added to it
+     */
+    static GuessingBuildSummary count(AbstractBuild<?,?> build) {
+        int correctCnt = 0, incorrectCnt = 0;
+        for (GuessingBuildAction action : build.getActions(GuessingBuildAction.class)) {
+            if (action.isCorrect()) {
+                correctCnt++;
+            } else {
+                incorrectCnt++;
+            }
+        }
+        for (GuessingBatchAction batch : build.getActions(GuessingBatchAction.class)) {
+            correctCnt += batch.getCorrectCount();
+            incorrectCnt += batch.getIncorrectCount();
+        }
+        return new GuessingBuildSummary(correctCnt, incorrectCnt);
+    }
+
+    private synchronized void add(int correct, int incorrect) {
+        this.correct += correct;
+        this.incorrect += incorrect;
+    }
+
+    public synchronized int getCorrect() {
+        return correct;
+    }
+
+    public synchronized int getIncorrect() {
+        return incorrect;
+    }
+
+    /**
+     * @return the number of guesses in the build, including batch rounds
+     */
+    public synchronized int getGuesses() {
+        return correct + incorrect;
+    }
+
+    /**
+     * @return the index the next guess of the build gets, counting from 1
+     */
+    public synchronized int getNextIndex() {
+        return correct + incorrect + 1;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s correct guesses out of a total of %s guesses", correct, correct + incorrect);
+    }
+}
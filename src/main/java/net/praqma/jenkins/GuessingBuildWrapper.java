@@ -28,19 +28,37 @@ import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
+import hudson.model.BuildStepListener;
 import hudson.model.FreeStyleProject;
+import hudson.tasks.BuildStep;
 import hudson.tasks.BuildWrapper;
 import hudson.tasks.BuildWrapperDescriptor;
 import java.io.IOException;
+import org.kohsuke.stapler.DataBoundConstructor;
 
 /**
+ * Optionally profiles the build steps of the build, see {@link GuessingProfileAction}.
  *
  * @author Mads
  */
 public class GuessingBuildWrapper extends BuildWrapper {
 
+    public final boolean profile;
+
+    @DataBoundConstructor
+    public GuessingBuildWrapper(boolean profile) {
+        this.profile = profile;
+    }
+
+    public GuessingBuildWrapper() {
+        this(false);
+    }
+
     @Override
     public Environment setUp(AbstractBuild build, Launcher launcher, BuildListener listener) throws IOException, InterruptedException {
+        if(profile && build.getAction(GuessingProfileAction.class) == null) {
+            build.addAction(new GuessingProfileAction());
+        }
         return new Environment() {
 
             @Override
@@ -50,6 +68,32 @@ public class GuessingBuildWrapper extends BuildWrapper {
             }            
         };
     }
+
+    /**
+     * Samples the steps of builds with a {@link GuessingProfileAction}.
+     */
+    @Extension
+    public static class ProfilingListener extends BuildStepListener {
+
+        @Override
+        public void started(AbstractBuild build, BuildStep bs, BuildListener listener) {
+            GuessingProfileAction action = build.getAction(GuessingProfileAction.class);
+            if(action != null) {
+                action.started(bs);
+            }
+        }
+
+        @Override
+        public void finished(AbstractBuild build, BuildStep bs, BuildListener listener, boolean canContinue) {
+            GuessingProfileAction action = build.getAction(GuessingProfileAction.class);
+            if(action != null) {
+                GuessingProfileAction.Step step = action.finished(bs);
+                if(step != null) {
+                    listener.getLogger().println("Profiled " + step);
+                }
+            }
+        }
+    }
     
     @Extension
     public static class DescriptorImpl extends BuildWrapperDescriptor {
@@ -24,21 +24,28 @@
 package net.praqma.jenkins;
 
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.ParameterValue;
 import hudson.model.ParametersAction;
+import hudson.model.Run;
+import hudson.model.TaskListener;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Random;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
 
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
 
 /**
  * The Builder for our project. We extend from Builder which implements BuildStep,
@@ -56,6 +63,16 @@ public class GuessingBuilder extends Builder {
 
 	public final Integer lower,upper;
 
+    /**
+     * The number of rounds to play. Anything above 1 plays the rounds in batch mode, see {@link GuessingBatchAction}.
+     */
+    public final Integer rounds;
+
+    /**
+     * A file in the workspace holding the guesses to play, one round per guess. Overrides the number of rounds.
+     */
+    public final String guessFile;
+
     /**
      * Required static constructor. This is used to create 'One Project Builder' BuildStep in the list-box item on your jobs
      * configuration page.
@@ -63,6 +80,13 @@ public class GuessingBuilder extends Builder {
     @Extension
     public static class GuessingBuilderImpl extends BuildStepDescriptor<Builder> {
 
+        private GuessingSeedSource seedSource = GuessingSeedSource.THREAD_LOCAL;
+        private long seed;
+
+        public GuessingBuilderImpl() {
+            load();
+        }
+
         /**
          * This is used to determine if this build step is applicable for your chosen project type. (FreeStyle, MultiConfiguration, Maven)
          * Some plugin build steps might be made to be only available to MultiConfiguration projects.
@@ -86,6 +110,35 @@ public class GuessingBuilder extends Builder {
             return "Guess a number";
         }
         
+        @Override
+        public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+            req.bindJSON(this, json);
+            save();
+            return true;
+        }
+
+        /**
+         * @return the source picking the seed of each build
+         */
+        public GuessingSeedSource getSeedSource() {
+            return seedSource == null ? GuessingSeedSource.THREAD_LOCAL : seedSource;
+        }
+
+        public void setSeedSource(GuessingSeedSource seedSource) {
+            this.seedSource = seedSource;
+        }
+
+        /**
+         * @return the seed used by the {@link GuessingSeedSource#SEEDED} source
+         */
+        public long getSeed() {
+            return seed;
+        }
+
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+
         /**
          * Form validate the lower bound configuration setting
          * @param upper
@@ -93,6 +146,16 @@ public class GuessingBuilder extends Builder {
          * @return 
          */
         public FormValidation doCheckLower(@QueryParameter Integer upper, @QueryParameter Integer lower) {
+            return checkLower(upper, lower);
+        }
+
+        /**
+         * Validates the lower bound. Shared with the other build steps playing the game.
+         * @param upper
+         * @param lower
+         * @return 
+         */
+        static FormValidation checkLower(Integer upper, Integer lower) {
             
             if(lower != null &&  (lower < 1 || lower > 6 )) {
                 return FormValidation.error("Has to be between 1 and 6");
@@ -112,6 +175,16 @@ public class GuessingBuilder extends Builder {
          * @return 
          */
         public FormValidation doCheckUpper(@QueryParameter Integer upper, @QueryParameter Integer lower) {
+            return checkUpper(upper, lower);
+        }
+
+        /**
+         * Validates the upper bound. Shared with the other build steps playing the game.
+         * @param upper
+         * @param lower
+         * @return 
+         */
+        static FormValidation checkUpper(Integer upper, Integer lower) {
             
             if(upper != null && upper > 6) {
                 return FormValidation.error("Has to be between 1 and 6");
@@ -123,18 +196,78 @@ public class GuessingBuilder extends Builder {
             
             return FormValidation.ok();
         }
+
+        /**
+         * Form validate the number of rounds
+         * @param rounds
+         * @return 
+         */
+        public FormValidation doCheckRounds(@QueryParameter Integer rounds) {
+            return checkRounds(rounds);
+        }
+
+        /**
+         * Validates the number of rounds, also when running a build, where the form validation may have been bypassed.
+         * @param rounds
+         * @return 
+         */
+        static FormValidation checkRounds(Integer rounds) {
+            if(rounds != null && rounds > GuessingBatchAction.MAX_ROUNDS) {
+                return FormValidation.error(String.format("The number of rounds has to be at most %s", GuessingBatchAction.MAX_ROUNDS));
+            }
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validates both bounds when running a build, where the form validation may have been bypassed.
+         * @param upper
+         * @param lower
+         * @return the first error found, or ok
+         */
+        static FormValidation checkBounds(Integer upper, Integer lower) {
+            if(upper == null || lower == null) {
+                return FormValidation.error("Both bounds must be configured");
+            }
+            FormValidation validation = checkLower(upper, lower);
+            return validation.kind == FormValidation.Kind.ERROR ? validation : checkUpper(upper, lower);
+        }
     }
 
     /**
-     * Our builder currently has 2 configuration parameters. Upper and lowerbound
+     * Our builder has 4 configuration parameters. Upper and lowerbound, the number of rounds to play and a file of
+     * guesses
      * 
      * @param lower
      * @param upper 
+     * @param rounds
+     * @param guessFile
      */
     @DataBoundConstructor
-    public GuessingBuilder(final Integer lower, final Integer upper) {
+    public GuessingBuilder(final Integer lower, final Integer upper, final Integer rounds, final String guessFile) {
         this.upper = upper;
         this.lower = lower;
+        this.rounds = rounds;
+        this.guessFile = Util.fixEmptyAndTrim(guessFile);
+    }
+
+    public GuessingBuilder(final Integer lower, final Integer upper, final Integer rounds) {
+        this(lower, upper, rounds, null);
+    }
+
+    public GuessingBuilder(final Integer lower, final Integer upper) {
+        this(lower, upper, null);
+    }
+
+    @Override
+    public GuessingBuilderImpl getDescriptor() {
+        return (GuessingBuilderImpl) super.getDescriptor();
+    }
+
+    /**
+     * @return the number of rounds to play, 1 if not configured
+     */
+    public int getRounds() {
+        return rounds == null || rounds < 1 ? 1 : rounds;
     }
 
     /**
@@ -156,40 +289,246 @@ public class GuessingBuilder extends Builder {
      */
     @Override
     public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
-        listener.getLogger().println(String.format("Guessing a number between %s and %s", lower, upper));
+        long start = System.nanoTime();
+        try {
+            FormValidation validation = GuessingBuilderImpl.checkBounds(upper, lower);
+            if(validation.kind != FormValidation.Kind.ERROR) {
+                validation = GuessingBuilderImpl.checkRounds(rounds);
+            }
+            if(validation.kind == FormValidation.Kind.ERROR) {
+                listener.error(validation.getMessage());
+                return false;
+            }
+
+            Integer parameter;
+            try {
+                parameter = getGuessParameter(build);
+            } catch (NumberFormatException e) {
+                listener.error(e.getMessage());
+                return false;
+            }
+
+            int nextIndex = GuessingBuildSummary.get(build).getNextIndex();
+            GuessingRandom rnd = createRandom(build, listener);
+            if(rnd == null) {
+                return false;
+            }
+
+            if(guessFile != null) {
+                if(!performFile(build, listener, rnd, nextIndex)) {
+                    return false;
+                }
+            } else if(getRounds() > 1) {
+                performBatch(build, listener, rnd, nextIndex, parameter);
+            } else {
+                listener.getLogger().println(String.format("Guessing a number between %s and %s", lower, upper));
 
-        int guess = -1;
+                int guess = parameter == null ? rnd.nextInt(lower, upper) : parameter;
 
-        List<ParametersAction> actions = build.getActions(ParametersAction.class);
+                int random = rnd.nextInt(lower, upper);
 
-        if(actions.isEmpty()) {
-            guess = new Random().nextInt(upper - lower + 1)+lower;
-        } else {
-            for(ParametersAction act : actions) {
-                guess = Integer.parseInt(act.getParameter("guess").createVariableResolver(build).resolve("guess"));
+                //Add the action to jenkins. This way we can reuse the data.
+                build.addAction(new GuessingBuildAction(nextIndex, guess, random, guess == random));
+                GuessingBuildSummary.record(build, guess == random ? 1 : 0, guess == random ? 0 : 1);
+                appendToColumnStore(build, listener, nextIndex, new int[] { guess }, new int[] { random });
+
+                if(GuessingEvents.hasClients(build.getProject())) {
+                    JSONObject event = new JSONObject();
+                    event.put("build", build.getNumber());
+                    event.put("index", nextIndex);
+                    event.put("guess", guess);
+                    event.put("number", random);
+                    event.put("correct", guess == random);
+                    GuessingEvents.publish(build.getProject(), "guess", event);
+                }
+
+                listener.getLogger().println("You guessed "+guess);
+                listener.getLogger().println("Jenkins rolled "+random);
             }
-        }
 
-        int random = new Random().nextInt(upper - lower + 1)+lower;
-        
+            // Add a GuessingRecorder if not already done. A configuration of a matrix project is rebuilt from its parent,
+            // so the recorder goes on the matrix project itself
+            addRecorder(build.getProject().getRootProject());
         
+            //return true (we summarize results in post build)
+            return true;
+        } finally {
+            GuessingMetrics.BUILDER_PERFORM.record(start);
+        }
+    }
 
-        //Add the action to jenkins. This way we can reuse the data.
-        int currentGuessingBuildActions = build.getActions(GuessingBuildAction.class).size();
-        build.addAction(new GuessingBuildAction(currentGuessingBuildActions + 1, guess, random, guess == random));
+    /**
+     * Adds a {@link GuessingRecorder} to the project if it does not have one yet. Concurrent builds of the project all
+     * get here, so the check and the change happen under the lock {@link AbstractProject#save()} takes as well.
+     */
+    static void addRecorder(AbstractProject<?,?> project) throws IOException {
+        if(!project.getPublishersList().getAll(GuessingRecorder.class).isEmpty()) {
+            return;
+        }
+        synchronized(project) {
+            if(project.getPublishersList().getAll(GuessingRecorder.class).isEmpty()) {
+                project.getPublishersList().add(new GuessingRecorder());
+                project.save();
+            }
+        }
+    }
 
-        // Add a GuessingRecorder if not already done
-        AbstractProject<?,?> project = build.getProject();
-		if(project.getPublishersList().getAll(GuessingRecorder.class).isEmpty()) {
-			project.getPublishersList().add(new GuessingRecorder());
-			project.save();
+    /**
+     * Plays all rounds at once, storing them in a single {@link GuessingBatchAction}.
+     *
+     * @param parameter the guess parameter of the build, played every round, or null to guess at random
+     */
+    private void performBatch(AbstractBuild<?, ?> build, BuildListener listener, GuessingRandom rnd, int firstIndex, Integer parameter) {
+        int count = getRounds();
+        listener.getLogger().println(String.format("Playing %s rounds, guessing numbers between %s and %s", count, lower, upper));
+
+        int[] guesses = new int[count];
+        int[] numbers = new int[count];
+        for(int i = 0; i < count; i++) {
+            guesses[i] = parameter == null ? rnd.nextInt(lower, upper) : parameter;
+            numbers[i] = rnd.nextInt(lower, upper);
         }
-        
-        listener.getLogger().println("You guessed "+guess);
-        listener.getLogger().println("Jenkins rolled "+random);
 
-        //return true (we summarize results in post build)
+        GuessingBatchAction action = new GuessingBatchAction(firstIndex, guesses, numbers);
+        build.addAction(action);
+        GuessingBuildSummary.record(build, action.getCorrectCount(), action.getIncorrectCount());
+        appendToColumnStore(build, listener, firstIndex, guesses, numbers);
+        publishBatch(build, action);
+
+        listener.getLogger().println(String.format("%s correct guesses out of %s rounds", action.getCorrectCount(), count));
+    }
+
+    /**
+     * Plays one round per guess in {@link #guessFile}, storing them in a single {@link GuessingBatchAction}. The file
+     * is parsed where the workspace is, see {@link GuessingFileReader}, and only the guesses are sent back.
+     *
+     * @return false if the file could not be read
+     */
+    private boolean performFile(AbstractBuild<?, ?> build, BuildListener listener, GuessingRandom rnd, int firstIndex) throws IOException, InterruptedException {
+        FilePath workspace = build.getWorkspace();
+        if(workspace == null) {
+            listener.error("No workspace to read the guesses from");
+            return false;
+        }
+        FilePath file = workspace.child(build.getEnvironment(listener).expand(guessFile));
+        if(!file.exists()) {
+            listener.error("The guess file " + file.getRemote() + " does not exist");
+            return false;
+        }
+
+        int[] guesses;
+        try {
+            guesses = file.act(new GuessingFileReader(lower, upper));
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to read the guesses from " + file.getRemote()));
+            return false;
+        }
+        listener.getLogger().println(String.format("Playing %s rounds from %s, guessing numbers between %s and %s", guesses.length, file.getRemote(), lower, upper));
+        if(guesses.length == 0) {
+            return true;
+        }
+
+        int[] numbers = new int[guesses.length];
+        for(int i = 0; i < numbers.length; i++) {
+            numbers[i] = rnd.nextInt(lower, upper);
+        }
+
+        GuessingBatchAction action = new GuessingBatchAction(firstIndex, guesses, numbers);
+        build.addAction(action);
+        GuessingBuildSummary.record(build, action.getCorrectCount(), action.getIncorrectCount());
+        appendToColumnStore(build, listener, firstIndex, guesses, numbers);
+        publishBatch(build, action);
+
+        listener.getLogger().println(String.format("%s correct guesses out of %s rounds", action.getCorrectCount(), guesses.length));
         return true;
     }
 
+    private static void publishBatch(AbstractBuild<?, ?> build, GuessingBatchAction action) {
+        if(!GuessingEvents.hasClients(build.getProject())) {
+            return;
+        }
+        JSONObject event = new JSONObject();
+        event.put("build", build.getNumber());
+        event.put("firstIndex", action.getFirstIndex());
+        event.put("rounds", action.size());
+        event.put("correct", action.getCorrectCount());
+        GuessingEvents.publish(build.getProject(), "batch", event);
+    }
+
+    /**
+     * Adds the guesses to the {@link GuessingColumnStore} of the project. A failure is reported but does not fail the
+     * build, the guesses are still recorded on the build itself.
+     */
+    private void appendToColumnStore(AbstractBuild<?, ?> build, BuildListener listener, int firstIndex, int[] guesses, int[] numbers) {
+        try {
+            GuessingColumnStore.get(build.getProject()).append(build.getNumber(), firstIndex, guesses, numbers);
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to add the guesses to the column store of the project"));
+        }
+    }
+
+    /**
+     * Creates the random number generator for this step. The first guessing step of a build picks the seed of the
+     * build, either from the {@value GuessingSeedAction#PARAMETER} build parameter when replaying a run, or from the
+     * configured seed source, and records it on the build. Shared with the other build steps playing the game.
+     *
+     * @return the generator, or null if the seed parameter is malformed, which has been reported to the listener
+     */
+    static GuessingRandom createRandom(AbstractBuild<?, ?> build, BuildListener listener) {
+        return createRandom(build, build.getBuildVariables().get(GuessingSeedAction.PARAMETER), listener);
+    }
+
+    /**
+     * Creates the random number generator for a step of any kind of run, like a Pipeline run.
+     *
+     * @param parameter the value of the {@value GuessingSeedAction#PARAMETER} build parameter, or null
+     * @return the generator, or null if the parameter is malformed, which has been reported to the listener
+     */
+    static GuessingRandom createRandom(Run<?, ?> run, String parameter, TaskListener listener) {
+        GuessingSeedAction seeds;
+        synchronized(run) {
+            seeds = run.getAction(GuessingSeedAction.class);
+            if(seeds == null) {
+                if(parameter != null) {
+                    long seed;
+                    try {
+                        seed = Long.parseLong(parameter.trim());
+                    } catch (NumberFormatException e) {
+                        listener.error(String.format("The %s parameter must be a number, got '%s'", GuessingSeedAction.PARAMETER, parameter));
+                        return null;
+                    }
+                    seeds = new GuessingSeedAction(seed, null);
+                } else {
+                    GuessingBuilderImpl descriptor = Jenkins.getInstance().getDescriptorByType(GuessingBuilderImpl.class);
+                    GuessingSeedSource source = descriptor.getSeedSource();
+                    seeds = new GuessingSeedAction(source.nextSeed(descriptor.getSeed(), run.getParent().getFullName(), run.getNumber()), source);
+                }
+                run.addAction(seeds);
+                listener.getLogger().println(String.format("Random seed %s (replay with the %s=%s build parameter)", seeds.getSeed(), GuessingSeedAction.PARAMETER, seeds.getSeed()));
+            }
+        }
+        return seeds.nextRandom();
+    }
+
+    /**
+     * @return the guess given as build parameter, or null if the build has no guess parameter
+     * @throws NumberFormatException if the guess parameter is not a number, with a message for the build log
+     */
+    private Integer getGuessParameter(AbstractBuild<?, ?> build) {
+        Integer guess = null;
+        for(ParametersAction act : build.getActions(ParametersAction.class)) {
+            // Builds replayed with only a seed parameter have no guess
+            ParameterValue value = act.getParameter("guess");
+            String resolved = value == null ? null : value.createVariableResolver(build).resolve("guess");
+            if(resolved != null) {
+                try {
+                    guess = Integer.parseInt(resolved.trim());
+                } catch (NumberFormatException e) {
+                    throw new NumberFormatException(String.format("The guess parameter must be a number, got '%s'", resolved));
+                }
+            }
+        }
+        return guess;
+    }
+
 }
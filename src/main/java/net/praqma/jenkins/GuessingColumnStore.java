@@ -0,0 +1,721 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Queue;
+import hudson.model.listeners.ItemListener;
+import hudson.util.AtomicFileWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+/**
+ * An append-only, columnar log of every guess made in a project.
+ *
+ * Each column (build number, index, guess, rolled number, correct flag) is a file of fixed-width values in the
+ * guessing-columns directory of the project, so a query only reads the columns it needs. The columns are read through
+ * memory-mapped buffers, so scanning millions of guesses neither loads a build nor copies the data onto the heap.
+ *
+ * Guesses are appended by {@link GuessingBuilder} as they are made. They are collected in memory and written to the
+ * column files together, when enough have been collected, when a build of the project completes, before the store
+ * is read and before Jenkins shuts down. Guesses made before the store existed are not in it, and guesses of deleted
+ * builds stay in it. If Jenkins stops in the middle of a write, the columns are cut back to the last complete row the
+ * next time the store is opened.
+ *
+ * Guesses still in memory are lost if Jenkins crashes. So the store keeps a checkpoint: every build numbered up to it
+ * has completed and all its guesses are written. It is moved forward as builds complete. When the store is opened,
+ * the rows of builds after the checkpoint are dropped, and the guesses of the completed builds after it are added
+ * again from their build records.
+ *
+ * The mapping of the columns is kept between reads and only replaced once the columns have grown past it. The
+ * mapping it replaces is released right away, so at most one mapping per column is held.
+ *
+ * @author Praqma
+ */
+public final class GuessingColumnStore {
+
+    private static final Logger LOGGER = Logger.getLogger(GuessingColumnStore.class.getName());
+
+    static final String DIR_NAME = "guessing-columns";
+
+    static final String CHECKPOINT_NAME = "checkpoint";
+
+    /**
+     * The number of guesses collected in memory before they are written.
+     */
+    static final int PENDING_ROWS = 4096;
+
+    private static final Map<AbstractProject<?,?>, GuessingColumnStore> INSTANCES = new WeakHashMap<AbstractProject<?,?>, GuessingColumnStore>();
+
+    private enum Column {
+        BUILD(4), INDEX(4), GUESS(4), NUMBER(4), CORRECT(1);
+
+        private final int width;
+
+        private Column(int width) {
+            this.width = width;
+        }
+
+        private File file(File dir) {
+            return new File(dir, name().toLowerCase(Locale.ENGLISH) + ".col");
+        }
+    }
+
+    /**
+     * Receives the rows of a scan.
+     */
+    public interface Visitor {
+        void visit(int build, int index, int guess, int number, boolean correct);
+    }
+
+    /**
+     * The directory of the columns. Follows the project when it is renamed or moved.
+     */
+    private volatile File dir;
+
+    /**
+     * The number of complete rows in the column files. Only rows below this are visible to readers.
+     */
+    private volatile long rows;
+
+    /**
+     * Every build numbered up to this one has completed and has all its guesses written, or -1 for a store kept
+     * before checkpoints were.
+     */
+    private int checkpoint = -1;
+
+    /**
+     * The rows not written yet, one buffer per column.
+     */
+    private final ByteBuffer[] pending = new ByteBuffer[Column.values().length];
+    private int pendingRows;
+
+    /**
+     * Guards the mapping. Readers hold the read lock while they use it, so it is never released under them.
+     */
+    private final ReadWriteLock mappingLock = new ReentrantReadWriteLock();
+    private ByteBuffer[] mapped;
+    private long mappedRows;
+
+    private GuessingColumnStore(File dir) {
+        this.dir = dir;
+        for (Column column : Column.values()) {
+            pending[column.ordinal()] = ByteBuffer.allocate(PENDING_ROWS * column.width);
+        }
+    }
+
+    /**
+     * @param project the project
+     * @return the store of the given project
+     */
+    public static GuessingColumnStore get(AbstractProject<?,?> project) {
+        // Resolved every time, the directory moves with the project
+        File dir = new File(project.getRootDir(), DIR_NAME);
+        synchronized (INSTANCES) {
+            GuessingColumnStore store = INSTANCES.get(project);
+            if (store == null) {
+                store = new GuessingColumnStore(dir);
+                store.recover();
+                store.reconcile(project);
+                INSTANCES.put(project, store);
+            } else {
+                store.moveTo(dir);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Writes the guesses collected for the project, if it has a store, and moves the checkpoint past the build unless
+     * an earlier build is still running.
+     *
+     * @param project the project
+     * @param build the build that completed
+     */
+    static void completed(AbstractProject<?,?> project, AbstractBuild<?,?> build) {
+        GuessingColumnStore store;
+        synchronized (INSTANCES) {
+            store = INSTANCES.get(project);
+        }
+        if (store != null) {
+            try {
+                store.checkpoint(project, build);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to write the guesses of " + project.getFullName(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the guesses collected for all projects. They would be lost with the heap.
+     */
+    static void flushAll() {
+        List<GuessingColumnStore> stores;
+        synchronized (INSTANCES) {
+            stores = new ArrayList<GuessingColumnStore>(INSTANCES.values());
+        }
+        for (GuessingColumnStore store : stores) {
+            try {
+                store.flush();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to write the guesses to " + store.dir, e);
+            }
+        }
+    }
+
+    /**
+     * Follows the project to its new directory. The column files have been moved with it, the guesses not written
+     * yet are written there.
+     */
+    private synchronized void moveTo(File newDir) {
+        if (newDir.equals(dir)) {
+            return;
+        }
+        release();
+        dir = newDir;
+        recover();
+    }
+
+    /**
+     * Cuts all columns back to the number of rows every column holds completely.
+     */
+    private synchronized void recover() {
+        long complete = Long.MAX_VALUE;
+        for (Column column : Column.values()) {
+            complete = Math.min(complete, column.file(dir).length() / column.width);
+        }
+        for (Column column : Column.values()) {
+            File file = column.file(dir);
+            if (file.exists() && file.length() != complete * column.width) {
+                try {
+                    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                    try {
+                        raf.setLength(complete * column.width);
+                    } finally {
+                        raf.close();
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to truncate " + file, e);
+                }
+            }
+        }
+        rows = complete;
+        checkpoint = readCheckpoint();
+    }
+
+    private int readCheckpoint() {
+        File file = new File(dir, CHECKPOINT_NAME);
+        if (!file.exists()) {
+            return -1;
+        }
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                byte[] bytes = new byte[16];
+                int n = 0;
+                for (int read = in.read(bytes); read > 0 && n < bytes.length; read = in.read(bytes, n, bytes.length - n)) {
+                    n += read;
+                }
+                return Integer.parseInt(new String(bytes, 0, n, "US-ASCII").trim());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read " + file + ", checking all guesses against the builds", e);
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Malformed " + file + ", checking all guesses against the builds", e);
+        }
+        return 0;
+    }
+
+    private void writeCheckpoint(int build) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        AtomicFileWriter writer = new AtomicFileWriter(new File(dir, CHECKPOINT_NAME));
+        try {
+            writer.write(String.valueOf(build));
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+        checkpoint = build;
+    }
+
+    /**
+     * Writes the collected guesses and moves the checkpoint up to the build before the first one still running.
+     */
+    private synchronized void checkpoint(AbstractProject<?,?> project, AbstractBuild<?,?> completed) throws IOException {
+        flush();
+        int safe = getLastCompleted(project, completed);
+        if (safe > checkpoint) {
+            writeCheckpoint(safe);
+        }
+    }
+
+    /**
+     * Brings the store in line with the build records after the checkpoint, which may have guesses that were never
+     * written or rows of builds that never completed.
+     */
+    private synchronized void reconcile(AbstractProject<?,?> project) {
+        int safe = getLastCompleted(project, null);
+        try {
+            if (checkpoint < 0) {
+                // New, or kept before checkpoints were. The rows there are cannot be checked, and are kept
+                writeCheckpoint(safe);
+                return;
+            }
+            int dropped = dropRowsAfter(checkpoint);
+            int added = 0;
+            for (AbstractBuild<?,?> b = project.getNearestBuild(checkpoint + 1); b != null && b.getNumber() <= safe; b = b.getNextBuild()) {
+                added += appendFromRecord(b);
+            }
+            flush();
+            if (dropped > 0 || added > 0) {
+                LOGGER.log(Level.INFO, "Replaced {0} guesses after build {1} of {2} with {3} from the build records",
+                        new Object[] { dropped, String.valueOf(checkpoint), project.getFullName(), added });
+            }
+            if (safe > checkpoint) {
+                writeCheckpoint(safe);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to check the guesses of " + project.getFullName() + " against its builds", e);
+        }
+    }
+
+    /**
+     * @param project the project
+     * @param completed a build that has completed but may still hold its executor, or null
+     * @return the number of the build before the first build of the project still running, or of the last build
+     */
+    private static int getLastCompleted(AbstractProject<?,?> project, AbstractBuild<?,?> completed) {
+        int firstRunning = Integer.MAX_VALUE;
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins != null) {
+            for (Computer computer : jenkins.getComputers()) {
+                List<Executor> executors = new ArrayList<Executor>(computer.getExecutors());
+                executors.addAll(computer.getOneOffExecutors());
+                for (Executor executor : executors) {
+                    Queue.Executable executable = executor.getCurrentExecutable();
+                    if (executable instanceof AbstractBuild && executable != completed && ((AbstractBuild<?,?>) executable).getProject() == project) {
+                        firstRunning = Math.min(firstRunning, ((AbstractBuild<?,?>) executable).getNumber());
+                    }
+                }
+            }
+        }
+        if (firstRunning != Integer.MAX_VALUE) {
+            return firstRunning - 1;
+        }
+        AbstractBuild<?,?> last = project.getLastBuild();
+        return last == null ? 0 : last.getNumber();
+    }
+
+    /**
+     * Removes the rows of all builds numbered after the given one. Rows of builds running at the same time are
+     * interleaved, so the rows after the first one removed are filtered, not cut off.
+     *
+     * @return the number of rows removed
+     */
+    private int dropRowsAfter(int build) throws IOException {
+        if (rows == 0) {
+            return 0;
+        }
+        release();
+        ByteBuffer[] columns = map(rows);
+        ByteBuffer[] kept = null;
+        int first = -1, keptRows = 0;
+        try {
+            IntBuffer builds = columns[Column.BUILD.ordinal()].asIntBuffer();
+            for (int i = 0, n = builds.limit(); i < n; i++) {
+                if (builds.get(i) > build) {
+                    first = i;
+                    break;
+                }
+            }
+            if (first < 0) {
+                return 0;
+            }
+            int tail = builds.limit() - first;
+            kept = new ByteBuffer[Column.values().length];
+            for (Column column : Column.values()) {
+                kept[column.ordinal()] = ByteBuffer.allocate(tail * column.width);
+            }
+            for (int i = first, n = builds.limit(); i < n; i++) {
+                if (builds.get(i) <= build) {
+                    for (Column column : Column.values()) {
+                        ByteBuffer from = columns[column.ordinal()];
+                        for (int b = 0; b < column.width; b++) {
+                            kept[column.ordinal()].put(from.get(i * column.width + b));
+                        }
+                    }
+                    keptRows++;
+                }
+            }
+        } finally {
+            unmap(columns);
+        }
+
+        long before = rows;
+        for (Column column : Column.values()) {
+            RandomAccessFile raf = new RandomAccessFile(column.file(dir), "rw");
+            try {
+                raf.setLength((long) first * column.width);
+            } finally {
+                raf.close();
+            }
+        }
+        rows = first;
+        write(kept, keptRows);
+        return (int) (before - rows);
+    }
+
+    /**
+     * Appends the guesses of a completed build from its build record.
+     *
+     * @return the number of guesses appended
+     */
+    private int appendFromRecord(AbstractBuild<?,?> build) throws IOException {
+        if (build.isBuilding()) {
+            return 0;
+        }
+        int added = 0;
+        for (GuessingBuildAction guess : build.getActions(GuessingBuildAction.class)) {
+            append(build.getNumber(), guess.getIndex(), guess.getGuess(), guess.getNumber());
+            added++;
+        }
+        for (GuessingBatchAction batch : build.getActions(GuessingBatchAction.class)) {
+            int[] guesses = new int[batch.size()];
+            int[] numbers = new int[batch.size()];
+            for (int round = 0; round < guesses.length; round++) {
+                GuessingBuildAction guess = batch.getGuess(round);
+                guesses[round] = guess.getGuess();
+                numbers[round] = guess.getNumber();
+            }
+            append(build.getNumber(), batch.getFirstIndex(), guesses, numbers);
+            added += guesses.length;
+        }
+        return added;
+    }
+
+    /**
+     * @return the number of guesses in the store, including those not written yet
+     */
+    public synchronized long size() {
+        return rows + pendingRows;
+    }
+
+    /**
+     * Appends a single guess.
+     */
+    public void append(int build, int index, int guess, int number) throws IOException {
+        append(build, index, new int[] { guess }, new int[] { number });
+    }
+
+    /**
+     * Appends consecutive guesses of a build.
+     *
+     * @param build the build number
+     * @param firstIndex the index of the first guess
+     * @param guesses the guesses
+     * @param numbers the rolled numbers
+     * @throws IOException if writing failed, in which case none of the guesses collected so far are added
+     */
+    public synchronized void append(int build, int firstIndex, int[] guesses, int[] numbers) throws IOException {
+        int n = guesses.length;
+        if (n == 0) {
+            return;
+        }
+        if (pendingRows + n > PENDING_ROWS) {
+            flush();
+        }
+        if (n > PENDING_ROWS) {
+            // Too many to collect, written as they are
+            ByteBuffer[] buffers = new ByteBuffer[Column.values().length];
+            for (Column column : Column.values()) {
+                buffers[column.ordinal()] = ByteBuffer.allocate(n * column.width);
+            }
+            put(buffers, build, firstIndex, guesses, numbers);
+            write(buffers, n);
+        } else {
+            put(pending, build, firstIndex, guesses, numbers);
+            pendingRows += n;
+        }
+    }
+
+    private static void put(ByteBuffer[] buffers, int build, int firstIndex, int[] guesses, int[] numbers) {
+        ByteBuffer builds = buffers[Column.BUILD.ordinal()];
+        ByteBuffer indexes = buffers[Column.INDEX.ordinal()];
+        ByteBuffer guessColumn = buffers[Column.GUESS.ordinal()];
+        ByteBuffer numberColumn = buffers[Column.NUMBER.ordinal()];
+        ByteBuffer correct = buffers[Column.CORRECT.ordinal()];
+        for (int i = 0; i < guesses.length; i++) {
+            builds.putInt(build);
+            indexes.putInt(firstIndex + i);
+            guessColumn.putInt(guesses[i]);
+            numberColumn.putInt(numbers[i]);
+            correct.put((byte) (guesses[i] == numbers[i] ? 1 : 0));
+        }
+    }
+
+    /**
+     * Writes the guesses collected so far to the column files.
+     *
+     * @throws IOException if writing failed, in which case the collected guesses are dropped
+     */
+    public synchronized void flush() throws IOException {
+        if (pendingRows == 0) {
+            return;
+        }
+        int n = pendingRows;
+        pendingRows = 0;
+        try {
+            write(pending, n);
+        } finally {
+            for (ByteBuffer buffer : pending) {
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Appends the given rows to the column files, opening each file once.
+     */
+    private void write(ByteBuffer[] buffers, int n) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        try {
+            for (Column column : Column.values()) {
+                ByteBuffer buffer = buffers[column.ordinal()];
+                buffer.flip();
+                FileOutputStream out = new FileOutputStream(column.file(dir), true);
+                try {
+                    FileChannel channel = out.getChannel();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                } finally {
+                    out.close();
+                }
+            }
+        } catch (IOException e) {
+            recover();
+            throw e;
+        }
+        rows += n;
+    }
+
+    /**
+     * Writes the collected guesses and maps the columns up to the current number of rows, unless the current mapping
+     * covers them already.
+     *
+     * @return read-only views of all columns, to be used while holding the read lock, which the caller must release
+     */
+    private ByteBuffer[] acquire() throws IOException {
+        long n;
+        synchronized (this) {
+            flush();
+            n = rows;
+        }
+        mappingLock.readLock().lock();
+        if (mapped != null && mappedRows >= n) {
+            return mapped;
+        }
+        mappingLock.readLock().unlock();
+
+        mappingLock.writeLock().lock();
+        try {
+            if (mapped == null || mappedRows < n) {
+                ByteBuffer[] buffers = map(n);
+                unmap(mapped);
+                mapped = buffers;
+                mappedRows = n;
+            }
+            // Downgrade, so other readers can go on with the new mapping
+            mappingLock.readLock().lock();
+            return mapped;
+        } finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
+    private ByteBuffer[] map(long n) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[Column.values().length];
+        try {
+            for (Column column : Column.values()) {
+                long length = n * column.width;
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("The " + column + " column is too large to map");
+                }
+                if (length == 0) {
+                    buffers[column.ordinal()] = ByteBuffer.allocate(0);
+                    continue;
+                }
+                RandomAccessFile raf = new RandomAccessFile(column.file(dir), "r");
+                try {
+                    buffers[column.ordinal()] = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+                } finally {
+                    raf.close();
+                }
+            }
+        } catch (IOException e) {
+            unmap(buffers);
+            throw e;
+        }
+        return buffers;
+    }
+
+    /**
+     * Releases the mapping, so the column files can be moved or deleted.
+     */
+    private void release() {
+        mappingLock.writeLock().lock();
+        try {
+            unmap(mapped);
+            mapped = null;
+            mappedRows = 0;
+        } finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unmaps the given buffers now, instead of when they are garbage collected. Only done where no reader can be
+     * using them. Where the JVM does not allow it, the buffers are left to the garbage collector.
+     */
+    private static void unmap(ByteBuffer[] buffers) {
+        if (buffers == null) {
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (!(buffer instanceof MappedByteBuffer)) {
+                continue;
+            }
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Could not unmap a column, leaving it to the garbage collector", e);
+            }
+        }
+    }
+
+    /**
+     * Visits all guesses made in the given range of builds, in the order they were made.
+     *
+     * @param fromBuild the first build number, inclusive
+     * @param toBuild the last build number, inclusive
+     * @param visitor the visitor
+     * @throws IOException if the columns could not be read
+     */
+    public void scan(int fromBuild, int toBuild, Visitor visitor) throws IOException {
+        ByteBuffer[] columns = acquire();
+        try {
+            IntBuffer builds = columns[Column.BUILD.ordinal()].asIntBuffer();
+            IntBuffer indexes = columns[Column.INDEX.ordinal()].asIntBuffer();
+            IntBuffer guesses = columns[Column.GUESS.ordinal()].asIntBuffer();
+            IntBuffer numbers = columns[Column.NUMBER.ordinal()].asIntBuffer();
+            ByteBuffer correct = columns[Column.CORRECT.ordinal()];
+            for (int i = 0, n = builds.limit(); i < n; i++) {
+                int build = builds.get(i);
+                if (build >= fromBuild && build <= toBuild) {
+                    visitor.visit(build, indexes.get(i), guesses.get(i), numbers.get(i), correct.get(i) != 0);
+                }
+            }
+        } finally {
+            mappingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the correct and incorrect guesses made in the given range of builds, reading only the build number and
+     * correct columns.
+     *
+     * @param fromBuild the first build number, inclusive
+     * @param toBuild the last build number, inclusive
+     * @return the number of correct and incorrect guesses
+     * @throws IOException if the columns could not be read
+     */
+    public long[] aggregate(int fromBuild, int toBuild) throws IOException {
+        ByteBuffer[] columns = acquire();
+        try {
+            IntBuffer builds = columns[Column.BUILD.ordinal()].asIntBuffer();
+            ByteBuffer correct = columns[Column.CORRECT.ordinal()];
+            long correctCnt = 0, incorrectCnt = 0;
+            for (int i = 0, n = builds.limit(); i < n; i++) {
+                int build = builds.get(i);
+                if (build >= fromBuild && build <= toBuild) {
+                    if (correct.get(i) != 0) {
+                        correctCnt++;
+                    } else {
+                        incorrectCnt++;
+                    }
+                }
+            }
+            return new long[] { correctCnt, incorrectCnt };
+        } finally {
+            mappingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the guesses collected for all projects before Jenkins goes down.
+     */
+    @Extension
+    public static class ShutdownFlusher extends ItemListener {
+
+        @Override
+        public void onBeforeShutdown() {
+            flushAll();
+        }
+    }
+}
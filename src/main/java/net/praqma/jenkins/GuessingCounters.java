@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.BulkChange;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.PeriodicWork;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+/**
+ * The number of correct and incorrect guesses across all jobs of this Jenkins instance.
+ *
+ * Builds completing on many executors at the same time only touch {@link StripedCounter}s, so they never wait for
+ * each other or for the disk. The totals are written to JENKINS_HOME in the background by {@link Flusher}, and once
+ * more when Jenkins shuts down, so they survive a restart. {@link XmlFile} writes to a temporary file and renames it,
+ * so a crash while flushing leaves the previous totals intact.
+ *
+ * @author Praqma
+ */
+public final class GuessingCounters implements Saveable {
+
+    private static final Logger LOGGER = Logger.getLogger(GuessingCounters.class.getName());
+
+    private static GuessingCounters instance;
+
+    /**
+     * The totals as of the last flush. These are the only fields written to disk.
+     */
+    private long correct;
+    private long incorrect;
+
+    private transient StripedCounter correctCounter;
+    private transient StripedCounter incorrectCounter;
+
+    private GuessingCounters() {
+        readResolve();
+    }
+
+    private Object readResolve() {
+        correctCounter = new StripedCounter();
+        correctCounter.add(correct);
+        incorrectCounter = new StripedCounter();
+        incorrectCounter.add(incorrect);
+        return this;
+    }
+
+    /**
+     * @return the counters, loaded from disk the first time they are used
+     */
+    public static synchronized GuessingCounters get() {
+        if (instance == null) {
+            instance = load();
+        }
+        return instance;
+    }
+
+    private static synchronized GuessingCounters peek() {
+        return instance;
+    }
+
+    private static GuessingCounters load() {
+        XmlFile file = getConfigFile();
+        if (file.exists()) {
+            try {
+                return (GuessingCounters) file.read();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load " + file + ", starting from zero", e);
+            } catch (ClassCastException e) {
+                LOGGER.log(Level.WARNING, "Unexpected content in " + file + ", starting from zero", e);
+            }
+        }
+        return new GuessingCounters();
+    }
+
+    private static XmlFile getConfigFile() {
+        return new XmlFile(Jenkins.XSTREAM, new File(Jenkins.getInstance().getRootDir(), GuessingCounters.class.getName() + ".xml"));
+    }
+
+    /**
+     * Adds the guesses of a build to the totals. Never blocks.
+     *
+     * @param correctCnt the number of correct guesses
+     * @param incorrectCnt the number of incorrect guesses
+     */
+    public void record(int correctCnt, int incorrectCnt) {
+        correctCounter.add(correctCnt);
+        incorrectCounter.add(incorrectCnt);
+    }
+
+    public long getCorrect() {
+        return correctCounter.sum();
+    }
+
+    public long getIncorrect() {
+        return incorrectCounter.sum();
+    }
+
+    /**
+     * Writes the current totals to disk, unless they are unchanged since the last flush.
+     */
+    public synchronized void flush() {
+        long correctNow = getCorrect();
+        long incorrectNow = getIncorrect();
+        if (correctNow == correct && incorrectNow == incorrect) {
+            return;
+        }
+        correct = correctNow;
+        incorrect = incorrectNow;
+        try {
+            save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the guessing counters", e);
+        }
+    }
+
+    @Override
+    public synchronized void save() throws IOException {
+        if (BulkChange.contains(this)) {
+            return;
+        }
+        getConfigFile().write(this);
+    }
+
+    /**
+     * Flushes the counters to disk every few seconds.
+     */
+    @Extension
+    public static class Flusher extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(10);
+        }
+
+        @Override
+        protected void doRun() throws Exception {
+            GuessingCounters counters = peek();
+            if (counters != null) {
+                counters.flush();
+            }
+        }
+    }
+
+    /**
+     * Flushes the counters one last time before Jenkins goes down.
+     */
+    @Extension
+    public static class ShutdownFlusher extends ItemListener {
+
+        @Override
+        public void onBeforeShutdown() {
+            GuessingCounters counters = peek();
+            if (counters != null) {
+                counters.flush();
+            }
+        }
+    }
+}
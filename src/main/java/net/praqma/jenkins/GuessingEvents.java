@@ -0,0 +1,240 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.model.AbstractProject;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletResponse;
+
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Pushes the guesses and totals of a project to dashboards as server-sent events, instead of having them reload the
+ * project page.
+ *
+ * Every client gets a queue of at most {@value #BUFFER} events. Publishing never blocks: a client whose queue is full
+ * has fallen behind and is dropped, and the browser reconnects by itself.
+ *
+ * While no client streams any project, checking {@link #hasClients(AbstractProject)} costs a volatile read. Otherwise it
+ * takes the lock of the map of projects, shared by all builds, so callers check it before building an event and publish
+ * nothing when it is false. Each client holds a request thread, so at most {@value #MAX_CLIENTS} clients stream one
+ * project and {@value #MAX_TOTAL_CLIENTS} stream all projects together.
+ *
+ * @author Praqma
+ */
+public final class GuessingEvents {
+
+    private static final Logger LOGGER = Logger.getLogger(GuessingEvents.class.getName());
+
+    static final int BUFFER = 256;
+
+    /**
+     * The most clients streaming a single project, each of them holding a request thread.
+     */
+    static final int MAX_CLIENTS = 64;
+
+    /**
+     * The most clients streaming any project, so dashboards cannot take all request threads of the master.
+     */
+    static final int MAX_TOTAL_CLIENTS = 128;
+
+    private static final long KEEP_ALIVE = TimeUnit.SECONDS.toMillis(15);
+
+    /**
+     * How long a client is streamed to before it has to reconnect, so request threads are not held forever.
+     */
+    private static final long MAX_STREAM = TimeUnit.MINUTES.toMillis(30);
+
+    private static final Map<AbstractProject<?,?>, GuessingEvents> INSTANCES = new WeakHashMap<AbstractProject<?,?>, GuessingEvents>();
+
+    /**
+     * The clients streaming any project. Only changed while holding the lock of {@link #INSTANCES}.
+     */
+    private static volatile int totalClients;
+
+    private final List<Client> clients = new CopyOnWriteArrayList<Client>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private GuessingEvents() { }
+
+    /**
+     * @param project the project
+     * @return true if a client streams the events of the project, so they are worth building
+     */
+    public static boolean hasClients(AbstractProject<?,?> project) {
+        return events(project) != null;
+    }
+
+    /**
+     * Publishes an event to all clients of a project.
+     *
+     * @param project the project
+     * @param type the type of the event, like guess or totals
+     * @param data the data of the event
+     */
+    public static void publish(AbstractProject<?,?> project, String type, JSONObject data) {
+        GuessingEvents events = events(project);
+        if (events != null) {
+            events.publish(type, data);
+        }
+    }
+
+    /**
+     * @return the events of the project if it has clients, else null
+     */
+    private static GuessingEvents events(AbstractProject<?,?> project) {
+        if (totalClients == 0) {
+            return null;
+        }
+        GuessingEvents events;
+        synchronized (INSTANCES) {
+            events = INSTANCES.get(project);
+        }
+        return events == null || events.clients.isEmpty() ? null : events;
+    }
+
+    /**
+     * @param statistics the statistics of a project
+     * @return the data of a totals event
+     */
+    static JSONObject totals(GuessingStatistics statistics) {
+        JSONObject data = new JSONObject();
+        data.put("correct", statistics.getCorrect());
+        data.put("incorrect", statistics.getIncorrect());
+        data.put("lastHourHitRate", statistics.getLastHour().getHitRate());
+        data.put("lastBuildsHitRate", statistics.getLastBuilds().getHitRate());
+        return data;
+    }
+
+    /**
+     * Registers a client of a project, unless too many clients stream already.
+     *
+     * @return the events of the project, or null if the client was refused
+     */
+    private static GuessingEvents subscribe(AbstractProject<?,?> project, Client client) {
+        synchronized (INSTANCES) {
+            GuessingEvents events = INSTANCES.get(project);
+            if (events == null) {
+                events = new GuessingEvents();
+                INSTANCES.put(project, events);
+            }
+            if (totalClients >= MAX_TOTAL_CLIENTS || events.clients.size() >= MAX_CLIENTS) {
+                return null;
+            }
+            events.clients.add(client);
+            totalClients++;
+            return events;
+        }
+    }
+
+    private static void unsubscribe(GuessingEvents events, Client client) {
+        synchronized (INSTANCES) {
+            if (events.clients.remove(client)) {
+                totalClients--;
+            }
+        }
+    }
+
+    private void publish(String type, JSONObject data) {
+        String event = "id: " + sequence.incrementAndGet() + "\nevent: " + type + "\ndata: " + data + "\n\n";
+        for (Client client : clients) {
+            if (!client.queue.offer(event)) {
+                // Removed from the clients by its own request thread, which stops streaming
+                client.dropped = true;
+            }
+        }
+    }
+
+    /**
+     * Streams the events of a project to the client of the request until it disconnects, falls behind or has been
+     * streamed to for a while. The stream starts with the current totals, so the client does not have to wait for a
+     * build.
+     *
+     * @param project the project
+     * @param rsp the response
+     * @throws IOException
+     */
+    static void stream(AbstractProject<?,?> project, StaplerResponse rsp) throws IOException {
+        Client client = new Client();
+        GuessingEvents events = subscribe(project, client);
+        if (events == null) {
+            rsp.setHeader("Retry-After", "60");
+            rsp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many clients streaming " + project.getFullName());
+            return;
+        }
+
+        rsp.setContentType("text/event-stream;charset=UTF-8");
+        rsp.setHeader("Cache-Control", "no-cache");
+        rsp.setHeader("X-Accel-Buffering", "no");
+        PrintWriter out = rsp.getWriter();
+        try {
+            out.print("retry: 5000\nevent: totals\ndata: " + totals(GuessingStatistics.get(project)) + "\n\n");
+            out.flush();
+
+            long end = System.currentTimeMillis() + MAX_STREAM;
+            while (!out.checkError() && !client.dropped && System.currentTimeMillis() < end) {
+                String event = client.queue.poll(KEEP_ALIVE, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    out.print(": keep-alive\n\n");
+                } else {
+                    out.print(event);
+                    // Send whatever else is queued in the same write
+                    for (event = client.queue.poll(); event != null; event = client.queue.poll()) {
+                        out.print(event);
+                    }
+                }
+                out.flush();
+            }
+            if (client.dropped) {
+                LOGGER.log(Level.FINE, "Dropped a client of {0} that fell behind", project.getFullName());
+                out.print("event: dropped\ndata: {}\n\n");
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            unsubscribe(events, client);
+        }
+    }
+
+    private static final class Client {
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<String>(BUFFER);
+        private volatile boolean dropped;
+    }
+}
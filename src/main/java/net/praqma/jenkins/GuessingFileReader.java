@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads a file of guesses where it lives, typically in the workspace on an agent, and sends back only the guesses.
+ *
+ * The file holds whole numbers separated by whitespace or commas, usually one per line, and may start with a UTF-8
+ * byte order mark. It is read a chunk at a time into one buffer and the digits are parsed straight from its bytes, so
+ * no string is created per guess and only the guesses themselves are held in memory. The file is not memory-mapped:
+ * a mapping is only released when the garbage collector gets to it, which would keep the file open and, on Windows,
+ * locked after the build step.
+ *
+ * @author Praqma
+ */
+final class GuessingFileReader implements FilePath.FileCallable<int[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * How much of the file is read at a time.
+     */
+    private static final int CHUNK = 1024 * 1024;
+
+    private static final byte[] BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private final int lower;
+    private final int upper;
+
+    /**
+     * @param lower the lowest allowed guess
+     * @param upper the highest allowed guess
+     */
+    GuessingFileReader(int lower, int upper) {
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    @Override
+    public int[] invoke(File file, VirtualChannel channel) throws IOException, InterruptedException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return read(raf.getChannel(), file.getName());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private int[] read(FileChannel channel, String name) throws IOException, InterruptedException {
+        long size = channel.size();
+        // A guess takes at least two bytes with its separator
+        int[] guesses = new int[(int) Math.min(Math.max(16, size / 2 + 1), 1 << 20)];
+        int count = 0;
+
+        int line = 1;
+        long value = 0;
+        boolean inNumber = false, negative = false;
+        ByteBuffer bom = ByteBuffer.allocate(BOM.length);
+        while (bom.hasRemaining() && channel.read(bom) >= 0) {
+            // Read until the first bytes are in or the file ends
+        }
+        if (!Arrays.equals(bom.array(), BOM)) {
+            channel.position(0);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(CHUNK, size)));
+        byte[] bytes = buffer.array();
+        while (channel.read(buffer) >= 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            int end = buffer.position();
+            buffer.clear();
+            for (int i = 0; i < end; i++) {
+                byte b = bytes[i];
+                if (b >= '0' && b <= '9') {
+                    value = value * 10 + (b - '0');
+                    if (value > Integer.MAX_VALUE) {
+                        throw new IOException(String.format("%s:%s: number too large", name, line));
+                    }
+                    inNumber = true;
+                } else if (b == '-' && !inNumber && !negative) {
+                    negative = true;
+                } else if (b == '\n' || b == '\r' || b == ' ' || b == '\t' || b == ',') {
+                    if (inNumber) {
+                        if (count == guesses.length) {
+                            guesses = Arrays.copyOf(guesses, grow(count, name, line));
+                        }
+                        guesses[count++] = check(negative ? -value : value, name, line);
+                        value = 0;
+                        inNumber = false;
+                    } else if (negative) {
+                        throw new IOException(String.format("%s:%s: '-' without a number", name, line));
+                    }
+                    negative = false;
+                    if (b == '\n') {
+                        line++;
+                    }
+                } else {
+                    throw new IOException(String.format("%s:%s: unexpected character '%s'", name, line, (char) (b & 0xff)));
+                }
+            }
+        }
+        if (inNumber) {
+            if (count == guesses.length) {
+                guesses = Arrays.copyOf(guesses, grow(count, name, line));
+            }
+            guesses[count++] = check(negative ? -value : value, name, line);
+        } else if (negative) {
+            throw new IOException(String.format("%s:%s: '-' without a number", name, line));
+        }
+        return count == guesses.length ? guesses : Arrays.copyOf(guesses, count);
+    }
+
+    /**
+     * @return the capacity to grow the guesses to, capped at the most rounds a batch holds
+     */
+    private static int grow(int count, String name, int line) throws IOException {
+        if (count >= GuessingBatchAction.MAX_ROUNDS) {
+            throw new IOException(String.format("%s:%s: more than %s guesses", name, line, GuessingBatchAction.MAX_ROUNDS));
+        }
+        return (int) Math.min(count * 2L, GuessingBatchAction.MAX_ROUNDS);
+    }
+
+    private int check(long guess, String name, int line) throws IOException {
+        if (guess < lower || guess > upper) {
+            throw new IOException(String.format("%s:%s: guess %s is not between %s and %s", name, line, guess, lower, upper));
+        }
+        return (int) guess;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.model.Run;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Conditional GET for the pages of the plugin.
+ *
+ * The pages only change when a build completes, so browsers and proxies may keep them as long as they ask first.
+ * Each page is tagged with the number of the completed build it shows and the time it completed, and a request
+ * carrying the same tag, or a date no older than the completion, is answered with 304 Not Modified instead of
+ * rendering the page again.
+ *
+ * @author Praqma
+ */
+final class GuessingHttpCache {
+
+    private GuessingHttpCache() { }
+
+    /**
+     * Renders the index view of the given object, unless the client already has it.
+     *
+     * @param it the object whose index.jelly is rendered
+     * @param build the completed build the view shows
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException
+     * @throws ServletException
+     */
+    static void serveIndex(Object it, Run<?, ?> build, StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        // Not the start of the build, the page changes when it completes
+        long completed = build.getTimeInMillis() + build.getDuration();
+        if (isNotModified(build.getNumber() + "-" + completed, completed, req, rsp)) {
+            return;
+        }
+        req.getView(it, "index.jelly").forward(req, rsp);
+    }
+
+    /**
+     * Sets the validators of the response and answers 304 Not Modified if the request matches them.
+     *
+     * @param tag the version of the resource, unquoted
+     * @param lastModified the time the resource last changed
+     * @param req the request
+     * @param rsp the response
+     * @return true if the response has been sent, and nothing should be written to it
+     */
+    static boolean isNotModified(String tag, long lastModified, StaplerRequest req, StaplerResponse rsp) {
+        String etag = '"' + tag + '"';
+        // Browsers may keep the page, but must ask before showing it again
+        rsp.setHeader("Cache-Control", "private, no-cache");
+        rsp.setHeader("ETag", etag);
+        rsp.setDateHeader("Last-Modified", lastModified);
+
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        boolean notModified;
+        if (ifNoneMatch != null) {
+            // If-None-Match takes precedence over If-Modified-Since
+            notModified = matches(ifNoneMatch, etag);
+        } else {
+            long ifModifiedSince;
+            try {
+                ifModifiedSince = req.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException e) {
+                ifModifiedSince = -1;
+            }
+            // HTTP dates have a resolution of one second
+            notModified = ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        }
+        if (notModified) {
+            rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return notModified;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.RootAction;
+import hudson.model.listeners.ItemListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jenkins.model.Jenkins;
+
+/**
+ * A leaderboard of all jobs playing the guessing game, with totals per job and per folder.
+ *
+ * The totals are kept in memory and updated by {@link GuessingRunListener} whenever the statistics of a job change.
+ * A job's entry holds the totals of its {@link GuessingStatistics}, and the change is added to every folder above it.
+ * At startup the entries are filled from the statistics files of the jobs, never from their build history. The page
+ * only sorts what is already there.
+ *
+ * @author Praqma
+ */
+@Extension
+public class GuessingLeaderboard implements RootAction {
+
+    private final ConcurrentMap<String, Entry> jobs = new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentMap<String, Entry> folders = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Increased on every change, so the sorted lists are only recomputed when needed.
+     */
+    private final AtomicLong version = new AtomicLong();
+    private volatile Sorted sorted;
+
+    /**
+     * The totals of a job or folder.
+     */
+    public static class Entry {
+        private final String name;
+        private volatile String url;
+        private final AtomicLong correct = new AtomicLong();
+        private final AtomicLong incorrect = new AtomicLong();
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the URL of the job or folder relative to the root of Jenkins, as of the last time it was shown
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        public long getCorrect() {
+            return correct.get();
+        }
+
+        public long getIncorrect() {
+            return incorrect.get();
+        }
+
+        public double getHitRate() {
+            long c = getCorrect(), total = c + getIncorrect();
+            return total == 0 ? 0 : (double) c / total;
+        }
+
+        /**
+         * Sets the totals of a job.
+         *
+         * @return the change, to be added to the folders above the job
+         */
+        private synchronized long[] set(long newCorrect, long newIncorrect) {
+            return new long[] { newCorrect - correct.getAndSet(newCorrect), newIncorrect - incorrect.getAndSet(newIncorrect) };
+        }
+
+        private void add(long[] delta) {
+            correct.addAndGet(delta[0]);
+            incorrect.addAndGet(delta[1]);
+        }
+    }
+
+    private static class Sorted {
+        private final long version;
+        private final List<Entry> jobs;
+        private final List<Entry> folders;
+
+        Sorted(long version, List<Entry> jobs, List<Entry> folders) {
+            this.version = version;
+            this.jobs = jobs;
+            this.folders = folders;
+        }
+    }
+
+    private static final Comparator<Entry> BY_CORRECT = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            long diff = b.getCorrect() - a.getCorrect();
+            return diff != 0 ? (diff > 0 ? 1 : -1) : a.getName().compareTo(b.getName());
+        }
+    };
+
+    /**
+     * @return the leaderboard of this Jenkins
+     */
+    public static GuessingLeaderboard get() {
+        return Jenkins.getInstance().getExtensionList(RootAction.class).get(GuessingLeaderboard.class);
+    }
+
+    /**
+     * Updates the entry of a job with its current statistics.
+     *
+     * @param project the job
+     * @param statistics the statistics of the job
+     */
+    public void update(AbstractProject<?,?> project, GuessingStatistics statistics) {
+        update(project, statistics.getCorrect(), statistics.getIncorrect());
+    }
+
+    private void update(Item item, long correct, long incorrect) {
+        Entry job = getOrCreate(jobs, item.getFullName());
+        long[] delta = job.set(correct, incorrect);
+        if (delta[0] != 0 || delta[1] != 0) {
+            for (ItemGroup<?> parent = item.getParent(); parent instanceof Item; parent = ((Item) parent).getParent()) {
+                getOrCreate(folders, ((Item) parent).getFullName()).add(delta);
+            }
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a job, and its totals from the folders above it.
+     *
+     * @param fullName the full name the job had
+     * @param parent the folder the job was in
+     */
+    private void remove(String fullName, ItemGroup<?> parent) {
+        Entry job = jobs.remove(fullName);
+        if (job == null) {
+            return;
+        }
+        long[] delta = job.set(0, 0);
+        for (; parent instanceof Item; parent = ((Item) parent).getParent()) {
+            Entry folder = folders.get(((Item) parent).getFullName());
+            if (folder != null) {
+                folder.add(delta);
+            }
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Removes a folder, everything in it, and its totals from the folders above it. Deleting a folder does not tell
+     * the items in it.
+     *
+     * @param fullName the full name the folder had
+     * @param parent the folder the folder was in
+     */
+    private void removeFolder(String fullName, ItemGroup<?> parent) {
+        String prefix = fullName + "/";
+        for (String name : jobs.keySet()) {
+            if (name.startsWith(prefix)) {
+                jobs.remove(name);
+            }
+        }
+        for (String name : folders.keySet()) {
+            if (name.startsWith(prefix)) {
+                folders.remove(name);
+            }
+        }
+        Entry folder = folders.remove(fullName);
+        if (folder != null) {
+            long[] delta = { -folder.getCorrect(), -folder.getIncorrect() };
+            for (; parent instanceof Item; parent = ((Item) parent).getParent()) {
+                Entry above = folders.get(((Item) parent).getFullName());
+                if (above != null) {
+                    above.add(delta);
+                }
+            }
+        }
+        version.incrementAndGet();
+    }
+
+    private static Entry getOrCreate(ConcurrentMap<String, Entry> map, String name) {
+        Entry entry = map.get(name);
+        if (entry == null) {
+            Entry created = new Entry(name);
+            entry = map.putIfAbsent(name, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        return entry;
+    }
+
+    private Sorted getSorted() {
+        Sorted current = sorted;
+        long v = version.get();
+        if (current == null || current.version != v) {
+            List<Entry> sortedJobs = new ArrayList<Entry>(jobs.values());
+            Collections.sort(sortedJobs, BY_CORRECT);
+            List<Entry> sortedFolders = new ArrayList<Entry>(folders.values());
+            Collections.sort(sortedFolders, BY_CORRECT);
+            current = new Sorted(v, Collections.unmodifiableList(sortedJobs), Collections.unmodifiableList(sortedFolders));
+            sorted = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return the jobs the current user can see, most correct guesses first
+     */
+    public List<Entry> getJobs() {
+        return visible(getSorted().jobs);
+    }
+
+    /**
+     * @return the folders the current user can see, most correct guesses first
+     */
+    public List<Entry> getFolders() {
+        return visible(getSorted().folders);
+    }
+
+    /**
+     * Looks up the item of every entry, which also checks that the current user may read it. Entries of deleted
+     * items are removed by {@link ItemListenerImpl}, so this only leaves out what the user cannot see.
+     */
+    private static List<Entry> visible(List<Entry> entries) {
+        Jenkins jenkins = Jenkins.getInstance();
+        List<Entry> visible = new ArrayList<Entry>(entries.size());
+        for (Entry entry : entries) {
+            Item item = jenkins.getItemByFullName(entry.getName());
+            if (item != null) {
+                entry.url = item.getUrl();
+                visible.add(entry);
+            }
+        }
+        return visible;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/guessing-game/images/64x64/guess.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Guessing game leaderboard";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "guessleaderboard";
+    }
+
+    /**
+     * Fills the leaderboard from the statistics files of all jobs once they are loaded.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void load() {
+        GuessingLeaderboard leaderboard = get();
+        for (AbstractProject<?,?> project : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
+            GuessingStatistics statistics = GuessingStatistics.peek(project);
+            if (statistics != null) {
+                leaderboard.update(project, statistics);
+            }
+        }
+    }
+
+    /**
+     * Keeps the leaderboard in line with jobs and folders being deleted, renamed and moved.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof AbstractProject) {
+                get().remove(item.getFullName(), item.getParent());
+            } else if (item instanceof ItemGroup) {
+                get().removeFolder(item.getFullName(), item.getParent());
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            if (item instanceof AbstractProject) {
+                GuessingLeaderboard leaderboard = get();
+                Entry old = leaderboard.jobs.get(oldFullName);
+                if (old != null) {
+                    long correct = old.getCorrect(), incorrect = old.getIncorrect();
+                    leaderboard.remove(oldFullName, parentOf(oldFullName));
+                    leaderboard.update(item, correct, incorrect);
+                }
+            } else if (item instanceof ItemGroup) {
+                // Moves the jobs in the folder not moved already by their own events
+                GuessingLeaderboard leaderboard = get();
+                String prefix = oldFullName + "/";
+                Map<String, Entry> moved = new HashMap<String, Entry>();
+                for (Map.Entry<String, Entry> job : leaderboard.jobs.entrySet()) {
+                    if (job.getKey().startsWith(prefix)) {
+                        moved.put(newFullName + "/" + job.getKey().substring(prefix.length()), job.getValue());
+                    }
+                }
+                leaderboard.removeFolder(oldFullName, parentOf(oldFullName));
+                for (Map.Entry<String, Entry> job : moved.entrySet()) {
+                    Item movedJob = Jenkins.getInstance().getItemByFullName(job.getKey());
+                    if (movedJob != null) {
+                        leaderboard.update(movedJob, job.getValue().getCorrect(), job.getValue().getIncorrect());
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the folder the item with the given full name is in, as far as it still exists
+         */
+        private static ItemGroup<?> parentOf(String fullName) {
+            int slash = fullName.lastIndexOf('/');
+            if (slash < 0) {
+                return Jenkins.getInstance();
+            }
+            Item parent = Jenkins.getInstance().getItemByFullName(fullName.substring(0, slash));
+            return parent instanceof ItemGroup ? (ItemGroup<?>) parent : Jenkins.getInstance();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.model.Action;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The guesses of all configurations of a matrix build, added to the parent build by {@link GuessingRecorder}.
+ *
+ * The counts are merged in as each configuration run finishes, so they are complete as soon as the parent build is,
+ * and showing them never loads the builds of the configurations.
+ *
+ * @author Praqma
+ */
+public class GuessingMatrixAction implements Action {
+
+    private long correct;
+    private long incorrect;
+    private int runs;
+
+    /**
+     * Correct and incorrect guesses by axis name, then by axis value.
+     */
+    private final SortedMap<String, SortedMap<String, long[]>> axes = new TreeMap<String, SortedMap<String, long[]>>();
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/guessing-game/images/64x64/guess.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Guesses per axis";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "guessingMatrix";
+    }
+
+    /**
+     * Adds the guesses of one finished configuration run.
+     *
+     * @param combination the axis values of the configuration, by axis name
+     * @param counts the correct and incorrect guesses of the run
+     */
+    synchronized void add(Map<String, String> combination, int[] counts) {
+        correct += counts[0];
+        incorrect += counts[1];
+        runs++;
+        for (Map.Entry<String, String> axis : combination.entrySet()) {
+            SortedMap<String, long[]> values = axes.get(axis.getKey());
+            if (values == null) {
+                values = new TreeMap<String, long[]>();
+                axes.put(axis.getKey(), values);
+            }
+            long[] value = values.get(axis.getValue());
+            if (value == null) {
+                value = new long[2];
+                values.put(axis.getValue(), value);
+            }
+            value[0] += counts[0];
+            value[1] += counts[1];
+        }
+    }
+
+    /**
+     * @return the guesses of all configuration runs that have finished
+     */
+    public synchronized GuessingWindows.Counts getTotal() {
+        return new GuessingWindows.Counts(correct, incorrect);
+    }
+
+    /**
+     * @return the number of configuration runs that have finished
+     */
+    public synchronized int getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return the guesses of each axis, ordered by name
+     */
+    public synchronized List<Axis> getAxes() {
+        List<Axis> result = new ArrayList<Axis>(axes.size());
+        for (Map.Entry<String, SortedMap<String, long[]>> axis : axes.entrySet()) {
+            List<Value> values = new ArrayList<Value>(axis.getValue().size());
+            for (Map.Entry<String, long[]> value : axis.getValue().entrySet()) {
+                values.add(new Value(value.getKey(), value.getValue()[0], value.getValue()[1]));
+            }
+            result.add(new Axis(axis.getKey(), Collections.unmodifiableList(values)));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s correct guesses out of a total of %s guesses in %s configurations", correct, correct + incorrect, runs);
+    }
+
+    /**
+     * The guesses of one axis, by value.
+     */
+    public static class Axis {
+        private final String name;
+        private final List<Value> values;
+
+        Axis(String name, List<Value> values) {
+            this.name = name;
+            this.values = values;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Value> getValues() {
+            return values;
+        }
+    }
+
+    /**
+     * The guesses of all configurations sharing one value of an axis.
+     */
+    public static class Value extends GuessingWindows.Counts {
+        private final String name;
+
+        Value(String name, long correct, long incorrect) {
+            super(correct, incorrect);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Latency histograms of the code the plugin adds to every build.
+ *
+ * Recording a duration costs two striped additions and one atomic increment, so the timers can stay enabled on busy
+ * instances. The histograms have exponential buckets, each twice as wide as the previous one, starting at one
+ * microsecond. They are exposed by {@link GuessingMetricsAction}.
+ *
+ * @author Praqma
+ */
+public enum GuessingMetrics {
+
+    BUILDER_PERFORM("guessing_builder_perform", "Time spent in GuessingBuilder.perform"),
+    RECORDER_PERFORM("guessing_recorder_perform", "Time spent in GuessingRecorder.perform"),
+    LISTENER_COMPLETED("guessing_listener_completed", "Time spent in GuessingRunListener.onCompleted"),
+    STATISTICS("guessing_statistics", "Time spent looking up the project statistics shown by GuessingProjectAction");
+
+    /**
+     * Bucket 0 holds durations below 2^10 ns, bucket i durations below 2^(10+i) ns. The last bucket holds the rest.
+     */
+    private static final int BUCKETS = 26;
+    private static final int FIRST_BUCKET_BITS = 10;
+
+    private final String name;
+    private final String help;
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter nanos = new StripedCounter();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private GuessingMetrics(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    /**
+     * Records the time passed since the given start.
+     *
+     * @param start the start, as given by {@link System#nanoTime()}
+     */
+    public void record(long start) {
+        long duration = Math.max(0, System.nanoTime() - start);
+        count.increment();
+        nanos.add(duration);
+        int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(duration) - FIRST_BUCKET_BITS);
+        buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the total of all recorded durations, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return nanos.sum();
+    }
+
+    private static double upperBoundSeconds(int bucket) {
+        return (1L << (FIRST_BUCKET_BITS + bucket)) / 1e9;
+    }
+
+    /**
+     * @return all timers and the global guess counters in the Prometheus text format
+     */
+    public static String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        for (GuessingMetrics metric : values()) {
+            String name = metric.name + "_seconds";
+            out.append("# HELP ").append(name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                cumulative += metric.buckets.get(i);
+                out.append(name).append("_bucket{le=\"").append(upperBoundSeconds(i)).append("\"} ").append(cumulative).append('\n');
+            }
+            long count = metric.getCount();
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+            out.append(name).append("_sum ").append(String.format(Locale.ENGLISH, "%.9f", metric.getTotalNanos() / 1e9)).append('\n');
+            out.append(name).append("_count ").append(count).append('\n');
+        }
+
+        GuessingCounters counters = GuessingCounters.get();
+        out.append("# HELP guessing_guesses_total Guesses made in all jobs\n");
+        out.append("# TYPE guessing_guesses_total counter\n");
+        out.append("guessing_guesses_total{result=\"correct\"} ").append(counters.getCorrect()).append('\n');
+        out.append("guessing_guesses_total{result=\"incorrect\"} ").append(counters.getIncorrect()).append('\n');
+        return out.toString();
+    }
+
+    /**
+     * @return all timers and the global guess counters as JSON
+     */
+    public static JSONObject toJSON() {
+        JSONObject timers = new JSONObject();
+        for (GuessingMetrics metric : values()) {
+            JSONArray histogram = new JSONArray();
+            for (int i = 0; i < BUCKETS; i++) {
+                JSONObject bucket = new JSONObject();
+                bucket.put("le", i < BUCKETS - 1 ? String.valueOf(upperBoundSeconds(i)) : "+Inf");
+                bucket.put("count", metric.buckets.get(i));
+                histogram.add(bucket);
+            }
+            JSONObject timer = new JSONObject();
+            timer.put("count", metric.getCount());
+            timer.put("totalNanos", metric.getTotalNanos());
+            timer.put("buckets", histogram);
+            timers.put(metric.name, timer);
+        }
+
+        GuessingCounters counters = GuessingCounters.get();
+        JSONObject guesses = new JSONObject();
+        guesses.put("correct", counters.getCorrect());
+        guesses.put("incorrect", counters.getIncorrect());
+
+        JSONObject json = new JSONObject();
+        json.put("timers", timers);
+        json.put("guesses", guesses);
+        return json;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+package net.praqma.jenkins;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+
+import java.io.IOException;
+
+import jenkins.model.Jenkins;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Serves the {@link GuessingMetrics} at guessingMetrics, read-only. The Prometheus text format is used by default,
+ * JSON when the format parameter is json.
+ *
+ * The metrics cover the builds of all jobs, so they are only served to administrators, and only from this one URL.
+ * The action has no icon and does not show in the side panel.
+ *
+ * @author Praqma
+ */
+@Extension
+public class GuessingMetricsAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Guessing game metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "guessingMetrics";
+    }
+
+    /**
+     * @param req the request, with the optional format parameter
+     * @param rsp the response
+     * @throws IOException
+     */
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setHeader("Cache-Control", "no-cache");
+        if ("json".equals(req.getParameter("format"))) {
+            rsp.setContentType("application/json;charset=UTF-8");
+            rsp.getWriter().print(GuessingMetrics.toJSON().toString());
+        } else {
+            rsp.setContentType("text/plain; version=0.0.4;charset=UTF-8");
+            rsp.getWriter().print(GuessingMetrics.toPrometheus());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.model.Action;
+import hudson.model.Describable;
+import hudson.tasks.BuildStep;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the build steps of a build profiled by {@link GuessingBuildWrapper} cost.
+ *
+ * The numbers are taken on the thread running the build on the master. Work a step hands off to an agent only shows in
+ * its wall-clock time, and the garbage collections are those of the whole master JVM while the step ran.
+ *
+ * @author Praqma
+ */
+public class GuessingProfileAction implements Action {
+
+    private final List<Step> steps = new ArrayList<Step>();
+
+    /**
+     * Samples of the steps currently running.
+     */
+    private transient Map<BuildStep, Sample> running;
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/guessing-game/images/64x64/guess.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Guessing profile";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "guessingProfile";
+    }
+
+    /**
+     * @return the profiled steps, in the order they finished
+     */
+    public synchronized List<Step> getSteps() {
+        return Collections.unmodifiableList(new ArrayList<Step>(steps));
+    }
+
+    /**
+     * @param step a build step about to run
+     */
+    synchronized void started(BuildStep step) {
+        if (running == null) {
+            running = new IdentityHashMap<BuildStep, Sample>();
+        }
+        running.put(step, new Sample());
+    }
+
+    /**
+     * @param step a build step that has run
+     * @return what the step cost, or null if it was not seen starting
+     */
+    synchronized Step finished(BuildStep step) {
+        Sample start = running == null ? null : running.remove(step);
+        if (start == null) {
+            return null;
+        }
+        Step profiled = new Step(steps.size() + 1, getName(step), start, new Sample());
+        steps.add(profiled);
+        return profiled;
+    }
+
+    private static String getName(BuildStep step) {
+        if (step instanceof Describable) {
+            return ((Describable<?>) step).getDescriptor().getDisplayName();
+        }
+        return step.getClass().getSimpleName();
+    }
+
+    /**
+     * The counters of the current thread and the JVM at one point in time.
+     */
+    private static final class Sample {
+
+        /**
+         * ThreadMXBean.getThreadAllocatedBytes(long) of com.sun.management, or null if the JVM does not measure the
+         * allocations of a thread. Looked up reflectively, JVMs like J9 do not have the class at all.
+         */
+        private static final Method ALLOCATED_BYTES = getAllocatedBytesMethod();
+
+        private final long wall = System.nanoTime();
+        private final long cpu;
+        private final long allocated;
+        private long gcCount;
+        private long gcTime;
+
+        Sample() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            cpu = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled() ? threads.getCurrentThreadCpuTime() : -1;
+            allocated = getAllocatedBytes(threads);
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, gc.getCollectionCount());
+                gcTime += Math.max(0, gc.getCollectionTime());
+            }
+        }
+
+        private static Method getAllocatedBytesMethod() {
+            try {
+                Class<?> hotspot = Class.forName("com.sun.management.ThreadMXBean");
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                if (hotspot.isInstance(threads) && (Boolean) hotspot.getMethod("isThreadAllocatedMemorySupported").invoke(threads)) {
+                    return hotspot.getMethod("getThreadAllocatedBytes", long.class);
+                }
+            } catch (Exception e) {
+                // Not measured on this JVM
+            } catch (LinkageError e) {
+                // Not measured on this JVM
+            }
+            return null;
+        }
+
+        private static long getAllocatedBytes(ThreadMXBean threads) {
+            if (ALLOCATED_BYTES == null) {
+                return -1;
+            }
+            try {
+                // -1 while the measurement is disabled
+                return (Long) ALLOCATED_BYTES.invoke(threads, Thread.currentThread().getId());
+            } catch (Exception e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * What a single build step cost.
+     */
+    public static class Step {
+        private final int index;
+        private final String name;
+        private final long wallTime;
+        private final long cpuTime;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcTime;
+
+        private Step(int index, String name, Sample start, Sample end) {
+            this.index = index;
+            this.name = name;
+            this.wallTime = (end.wall - start.wall) / 1000000;
+            this.cpuTime = start.cpu < 0 || end.cpu < 0 ? -1 : (end.cpu - start.cpu) / 1000000;
+            this.allocatedBytes = start.allocated < 0 || end.allocated < 0 ? -1 : end.allocated - start.allocated;
+            this.gcCount = end.gcCount - start.gcCount;
+            this.gcTime = end.gcTime - start.gcTime;
+        }
+
+        /**
+         * @return the position of the step among the profiled steps, counting from 1
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the wall-clock time of the step, in milliseconds
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * @return the CPU time of the step, in milliseconds, or -1 if the JVM does not measure it
+         */
+        public long getCpuTime() {
+            return cpuTime;
+        }
+
+        /**
+         * @return the bytes allocated by the step, or -1 if the JVM does not measure it
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @return the number of garbage collections while the step ran
+         */
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        /**
+         * @return the time spent in garbage collections while the step ran, in milliseconds
+         */
+        public long getGcTime() {
+            return gcTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d ms wall, %d ms CPU, %d bytes allocated, %d GCs taking %d ms",
+                    name, wallTime, cpuTime, allocatedBytes, gcCount, gcTime);
+        }
+    }
+}
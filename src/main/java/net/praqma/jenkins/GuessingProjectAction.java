@@ -28,7 +28,19 @@ import hudson.model.ProminentProjectAction;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.ServletException;
+
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 /**
  * Class implementing actionable and ProminentProjectAction.
@@ -42,9 +54,22 @@ import java.util.Collection;
  */
 public class GuessingProjectAction implements ProminentProjectAction {
 
+    private static final int DEFAULT_EXPORT_LIMIT = 1000;
+    private static final int MAX_EXPORT_LIMIT = 100000;
+
+    /**
+     * The number of guesses of the last build shown on the page, the rest are exported.
+     */
+    static final int LAST_BUILD_GUESSES = 100;
+
     public final AbstractProject<?,?> project;
     public int correct;
     public int incorrect;
+
+    /**
+     * The summary and first guesses of the last completed build, kept until another build completes.
+     */
+    private volatile LastBuild lastBuild;
     
     /**
      * If this method returns null, no icon will be used and the link will not be visible
@@ -77,34 +102,364 @@ public class GuessingProjectAction implements ProminentProjectAction {
 
     /**
      *
-     * @return the last build action associated with this project.
+     * @return the first {@value #LAST_BUILD_GUESSES} guesses of the last completed build, or null if there is none
      */
     public Collection<GuessingBuildAction> getLastBuildActions() {
+        LastBuild last = getLastBuild();
+        return last == null ? null : last.actions;
+    }
+
+    /**
+     * @return the number of correct and incorrect guesses of the last completed build, or null if there is none
+     */
+    public GuessingBuildSummary getLastBuildSummary() {
+        LastBuild last = getLastBuild();
+        return last == null ? null : last.summary;
+    }
+
+    /**
+     * @return the number of the last completed build, or null if there is none
+     */
+    public Integer getLastBuildNumber() {
+        LastBuild last = getLastBuild();
+        return last == null ? null : last.number;
+    }
+
+    private LastBuild getLastBuild() {
         AbstractBuild<?, ?> b = project.getLastCompletedBuild();
-        return b == null ? null : b.getActions(GuessingBuildAction.class);
+        if (b == null) {
+            return null;
+        }
+        LastBuild last = lastBuild;
+        long completed = GuessingStatistics.getCompleted(b);
+        if (last == null || last.number != b.getNumber() || last.completed != completed) {
+            last = new LastBuild(b.getNumber(), completed, GuessingBuildSummary.get(b), getFirstGuesses(b, LAST_BUILD_GUESSES));
+            lastBuild = last;
+        }
+        return last;
     }
 
-    public int getLocalCorrect() {
-    	return getLocalCorrectIncorrect()[0];
+    /**
+     * Serves guessstatistics/ with an ETag and Last-Modified date from the last completed build, which is all the page
+     * shows, and answers 304 Not Modified until another build completes.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException
+     * @throws ServletException
+     */
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        AbstractBuild<?, ?> b = project.getLastCompletedBuild();
+        if (b == null) {
+            req.getView(this, "index.jelly").forward(req, rsp);
+        } else {
+            GuessingHttpCache.serveIndex(this, b, req, rsp);
+        }
     }
 
+    /**
+     * @return the number of correct guesses in all builds of this project
+     */
+    public long getLocalCorrect() {
+        long start = System.nanoTime();
+        try {
+            return GuessingStatistics.get(project).getCorrect();
+        } finally {
+            GuessingMetrics.STATISTICS.record(start);
+        }
+    }
 
-    public int getLocalIncorrect() {
-    	return getLocalCorrectIncorrect()[1];
+    /**
+     * @return the number of incorrect guesses in all builds of this project
+     */
+    public long getLocalIncorrect() {
+        long start = System.nanoTime();
+        try {
+            return GuessingStatistics.get(project).getIncorrect();
+        } finally {
+            GuessingMetrics.STATISTICS.record(start);
+        }
+    }
+
+    /**
+     * @return the number of deleted builds whose guesses are still included in the totals
+     */
+    public long getCompactedBuilds() {
+        return GuessingStatistics.get(project).getCompactedBuilds();
+    }
+
+    /**
+     * @return how much of the statistics of this project has been rebuilt, in percent, or null if they are complete
+     */
+    public Integer getRebuildPercentage() {
+        GuessingBuildScanner.Progress progress = GuessingStatistics.get(project).getRebuildProgress();
+        return progress == null ? null : progress.getPercentage();
+    }
+
+    /**
+     * @return the hit rate over time of this project
+     */
+    public GuessingTrend getTrend() {
+        return GuessingStatistics.get(project).getTrend();
     }
 
-    private int[] getLocalCorrectIncorrect() {
-        int correctCnt = 0, incorrectCnt = 0;
-        for( AbstractBuild<?, ?> b = project.getLastCompletedBuild() ; b != null ; b = b.getPreviousBuild() ) {
-            Collection<GuessingBuildAction> actions = b.getActions( GuessingBuildAction.class );
-            for (GuessingBuildAction action : actions) {
-            	if (action.isCorrect()) {
-            		correctCnt++;
-            	} else {
-            		incorrectCnt++;
-            	}
+    /**
+     * @return the guesses of this project within the last hour
+     */
+    public GuessingWindows.Counts getLastHour() {
+        return GuessingStatistics.get(project).getLastHour();
+    }
+
+    /**
+     * @return the guesses of this project within the last day
+     */
+    public GuessingWindows.Counts getLastDay() {
+        return GuessingStatistics.get(project).getLastDay();
+    }
+
+    /**
+     * @return the guesses of the last builds of this project
+     */
+    public GuessingWindows.Counts getLastBuilds() {
+        return GuessingStatistics.get(project).getLastBuilds();
+    }
+
+    /**
+     * @return the distributions of the wide-range rounds of this project, or null if it has played none
+     */
+    public GuessingSketches getSketches() {
+        return GuessingSketches.peek(project);
+    }
+
+    /**
+     * Serves the guesses and hit rates of the last hour, the last day and the last builds as JSON at
+     * guessstatistics/windows.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException
+     */
+    public void doWindows(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        GuessingStatistics statistics = GuessingStatistics.get(project);
+        JSONObject json = new JSONObject();
+        json.put("lastHour", toJSON(statistics.getLastHour()));
+        json.put("lastDay", toJSON(statistics.getLastDay()));
+        json.put("lastBuilds", toJSON(statistics.getLastBuilds()));
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(json);
+    }
+
+    private static JSONObject toJSON(GuessingWindows.Counts counts) {
+        JSONObject json = new JSONObject();
+        json.put("correct", counts.getCorrect());
+        json.put("incorrect", counts.getIncorrect());
+        json.put("hitRate", counts.getHitRate());
+        return json;
+    }
+
+    /**
+     * Serves the hit rate trend as JSON at guessstatistics/trend.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException
+     */
+    public void doTrend(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        GuessingStatistics statistics = GuessingStatistics.get(project);
+        if (req.checkIfModified(statistics.getLastUpdated(), rsp)) {
+            return;
+        }
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(statistics.getTrend().toJSON());
+    }
+
+    /**
+     * Serves the hit rate trend as a chart at guessstatistics/trendPng.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException
+     */
+    public void doTrendPng(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        if (!GuessingTrend.canDraw()) {
+            rsp.sendRedirect2(req.getContextPath() + "/images/headless.png");
+            return;
+        }
+        GuessingStatistics statistics = GuessingStatistics.get(project);
+        if (req.checkIfModified(statistics.getLastUpdated(), rsp)) {
+            return;
+        }
+        byte[] png = statistics.getTrend().toPNG();
+        rsp.setContentType("image/png");
+        rsp.setContentLength(png.length);
+        rsp.getOutputStream().write(png);
+    }
+
+    /**
+     * Streams the guesses and totals of this project as server-sent events at guessstatistics/events, see
+     * {@link GuessingEvents}. Events are guess and batch while a guessing step runs, and totals when a build completes.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException
+     */
+    public void doEvents(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        GuessingEvents.stream(project, rsp);
+    }
+
+    /**
+     * Exports the guesses of a range of builds at guessstatistics/export, as CSV or, with format=json, as JSON.
+     *
+     * The builds are visited one at a time, from the first build numbered from or above, and their guesses are written
+     * to the response as they are read, so memory use does not depend on the size of the range. A page holds at most
+     * limit builds, between 1 and {@value #MAX_EXPORT_LIMIT}, and ends before the first build still running, so that build is exported once it has completed.
+     * The number of the build to continue from is sent in the X-Guessing-Next header, and the JSON export also ends
+     * with it. Neither is there when the range has been exported.
+     *
+     * @param req the request, with the optional from, to, limit and format parameters
+     * @param rsp the response
+     * @throws IOException
+     */
+    public void doExport(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        int from = intParameter(req, "from", 1);
+        int to = intParameter(req, "to", Integer.MAX_VALUE);
+        // At least one build per page, so following the cursor always gets further
+        int limit = Math.max(1, Math.min(intParameter(req, "limit", DEFAULT_EXPORT_LIMIT), MAX_EXPORT_LIMIT));
+        boolean json = "json".equals(req.getParameter("format"));
+
+        // Find where the page ends first, the header has to be sent before the guesses
+        AbstractBuild<?, ?> start = project.getNearestBuild(from);
+        AbstractBuild<?, ?> next = start;
+        int builds = 0;
+        for (; next != null && next.getNumber() <= to && builds < limit && !next.isBuilding(); builds++) {
+            next = next.getNextBuild();
+        }
+        if (next != null && next.getNumber() > to) {
+            next = null;
+        }
+
+        rsp.setContentType(json ? "application/json;charset=UTF-8" : "text/csv;charset=UTF-8");
+        if (next != null) {
+            rsp.setHeader("X-Guessing-Next", String.valueOf(next.getNumber()));
+        }
+        PrintWriter out = rsp.getWriter();
+        out.print(json ? "{\"guesses\":[" : "build,index,guess,number,correct\n");
+
+        boolean first = true;
+        AbstractBuild<?, ?> b = start;
+        for (int i = 0; i < builds; i++, b = b.getNextBuild()) {
+            for (GuessingBuildAction guess : b.getActions(GuessingBuildAction.class)) {
+                writeGuess(out, json, first, b.getNumber(), guess);
+                first = false;
+            }
+            for (GuessingBatchAction batch : b.getActions(GuessingBatchAction.class)) {
+                for (GuessingBuildAction guess : batch.getGuesses()) {
+                    writeGuess(out, json, first, b.getNumber(), guess);
+                    first = false;
+                }
             }
         }
-        return new int[] { correctCnt, incorrectCnt };
+
+        if (json) {
+            out.print("],\"next\":");
+            out.print(next != null ? String.valueOf(next.getNumber()) : "null");
+            out.print("}");
+        }
+        out.flush();
+    }
+
+    /**
+     * Counts the correct and incorrect guesses of a range of builds at guessstatistics/aggregate, from the
+     * {@link GuessingColumnStore} of the project, without loading any build.
+     *
+     * @param req the request, with the optional from and to parameters
+     * @param rsp the response
+     * @throws IOException
+     */
+    public void doAggregate(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        int from = intParameter(req, "from", 1);
+        int to = intParameter(req, "to", Integer.MAX_VALUE);
+        long[] counts = GuessingColumnStore.get(project).aggregate(from, to);
+
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(String.format("{\"from\":%s,\"to\":%s,\"correct\":%s,\"incorrect\":%s}", from, to, counts[0], counts[1]));
+    }
+
+    private static void writeGuess(PrintWriter out, boolean json, boolean first, int build, GuessingBuildAction guess) {
+        // Printed field by field, formatting each row would dominate the export of large batches
+        if (json) {
+            out.print(first ? "{\"build\":" : ",{\"build\":");
+            out.print(build);
+            out.print(",\"index\":");
+            out.print(guess.getIndex());
+            out.print(",\"guess\":");
+            out.print(guess.getGuess());
+            out.print(",\"number\":");
+            out.print(guess.getNumber());
+            out.print(",\"correct\":");
+            out.print(guess.isCorrect());
+            out.print('}');
+        } else {
+            out.print(build);
+            out.print(',');
+            out.print(guess.getIndex());
+            out.print(',');
+            out.print(guess.getGuess());
+            out.print(',');
+            out.print(guess.getNumber());
+            out.print(',');
+            out.print(guess.isCorrect());
+            out.print('\n');
+        }
+    }
+
+    private static int intParameter(StaplerRequest req, String name, int defaultValue) {
+        String value = req.getParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param b the build
+     * @param limit the maximum number of guesses to return
+     * @return the first guesses made in the build, including the rounds of batches
+     */
+    private static List<GuessingBuildAction> getFirstGuesses(AbstractBuild<?, ?> b, int limit) {
+        List<GuessingBuildAction> actions = new ArrayList<GuessingBuildAction>();
+        for (GuessingBuildAction guess : b.getActions(GuessingBuildAction.class)) {
+            if (actions.size() == limit) {
+                return actions;
+            }
+            actions.add(guess);
+        }
+        for (GuessingBatchAction batch : b.getActions(GuessingBatchAction.class)) {
+            for (int round = 0; round < batch.size(); round++) {
+                if (actions.size() == limit) {
+                    return actions;
+                }
+                actions.add(batch.getGuess(round));
+            }
+        }
+        return actions;
+    }
+
+    private static final class LastBuild {
+        private final int number;
+        private final long completed;
+        private final GuessingBuildSummary summary;
+        private final List<GuessingBuildAction> actions;
+
+        private LastBuild(int number, long completed, GuessingBuildSummary summary, List<GuessingBuildAction> actions) {
+            this.number = number;
+            this.completed = completed;
+            this.summary = summary;
+            this.actions = Collections.unmodifiableList(actions);
+        }
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+/**
+ * A small, fast and non thread-safe random number generator (SplitMix64).
+ *
+ * Unlike {@link java.util.Random} it does not use an atomic seed, so creating one per build step costs a single
+ * allocation and using it never contends with other builds. Given the same seed it always produces the same sequence,
+ * which is what makes a run reproducible, see {@link GuessingSeedAction}.
+ *
+ * @author Praqma
+ */
+public final class GuessingRandom {
+
+    static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+    private long state;
+
+    public GuessingRandom(long seed) {
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    /**
+     * @return the seed this generator was created with
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * @param bound the upper bound, exclusive. Must be positive.
+     * @return a uniformly distributed value between 0 and bound
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive, got " + bound);
+        }
+        int bits, val;
+        do {
+            bits = (int) (nextLong() >>> 33);
+            val = bits % bound;
+        } while (bits - val + (bound - 1) < 0);
+        return val;
+    }
+
+    /**
+     * @param lower the lower bound, inclusive
+     * @param upper the upper bound, inclusive
+     * @return a uniformly distributed value between lower and upper
+     */
+    public int nextInt(int lower, int upper) {
+        return nextInt(upper - lower + 1) + lower;
+    }
+
+    /**
+     * @param lower the lower bound, inclusive
+     * @param upper the upper bound, inclusive, at least lower. The range may span all long values.
+     * @return a uniformly distributed value between lower and upper
+     */
+    public long nextLong(long lower, long upper) {
+        long n = upper - lower + 1;
+        if (n > 0) {
+            long bits, val;
+            do {
+                bits = nextLong() >>> 1;
+                val = bits % n;
+            } while (bits - val + (n - 1) < 0);
+            return val + lower;
+        }
+        // The range holds more than Long.MAX_VALUE values, at least half of all draws fall in it
+        long val;
+        do {
+            val = nextLong();
+        } while (val < lower || val > upper);
+        return val;
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -25,6 +25,10 @@ package net.praqma.jenkins;
 
 import hudson.Extension;
 import hudson.Launcher;
+import hudson.matrix.MatrixAggregatable;
+import hudson.matrix.MatrixAggregator;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixRun;
 import hudson.model.Action;
 import hudson.model.BuildListener;
 import hudson.model.Result;
@@ -38,10 +42,15 @@ import hudson.tasks.Recorder;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 import org.kohsuke.stapler.DataBoundConstructor;
 
-public class GuessingRecorder extends Recorder {
+public class GuessingRecorder extends Recorder implements MatrixAggregatable {
+
+    /**
+     * Jenkins asks for the project actions every time the project is shown, so the action, and what it has computed,
+     * is kept for the next time.
+     */
+    private transient volatile GuessingProjectAction projectAction;
     
     @DataBoundConstructor
     public GuessingRecorder() {
@@ -72,31 +81,74 @@ public class GuessingRecorder extends Recorder {
 	public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
 			BuildListener listener) throws InterruptedException, IOException {
 
-        List<GuessingBuildAction> actions = build.getActions(GuessingBuildAction.class);
-        int succes = 0;
-        int failure = 0;
-        for(GuessingBuildAction a : actions) {
-            if(!a.isCorrect()) {
-                failure++;
-            } else{
-                succes++;
-            }
-
-        }
+        long start = System.nanoTime();
+        try {
+            GuessingBuildSummary summary = GuessingBuildSummary.get(build);
+            int succes = summary.getCorrect();
+            int failure = summary.getIncorrect();
         
-        listener.getLogger().println(String.format("%s correct guesses out of a total of %s guesses", succes, succes+failure));
+            listener.getLogger().println(String.format("%s correct guesses out of a total of %s guesses", succes, succes+failure));
         
-        if(succes >= failure) {
-            return true;
-        } else {
-            build.setResult(Result.UNSTABLE);
-            return true;        
+            if(succes >= failure) {
+                return true;
+            } else {
+                build.setResult(Result.UNSTABLE);
+                return true;        
+            }
+        } finally {
+            GuessingMetrics.RECORDER_PERFORM.record(start);
         }
 	}
 
 	@Override
 	public Collection<? extends Action> getProjectActions(
 			AbstractProject<?, ?> project) {
-		return Collections.singleton(new GuessingProjectAction(project));
+		GuessingProjectAction action = projectAction;
+		if (action == null || action.project != project) {
+			action = new GuessingProjectAction(project);
+			projectAction = action;
+		}
+		return Collections.singleton(action);
+	}
+
+	/**
+	 * Merges the guesses of each configuration into a {@link GuessingMatrixAction} on the parent build as the
+	 * configuration runs finish.
+	 */
+	@Override
+	public MatrixAggregator createAggregator(MatrixBuild build, Launcher launcher, BuildListener listener) {
+		return new Aggregator(build, launcher, listener);
+	}
+
+	private static class Aggregator extends MatrixAggregator {
+
+		private final GuessingMatrixAction action = new GuessingMatrixAction();
+
+		Aggregator(MatrixBuild build, Launcher launcher, BuildListener listener) {
+			super(build, launcher, listener);
+		}
+
+		@Override
+		public boolean startBuild() throws InterruptedException, IOException {
+			build.addAction(action);
+			return true;
+		}
+
+		@Override
+		public boolean endRun(MatrixRun run) throws InterruptedException, IOException {
+			action.add(run.getParent().getCombination(), GuessingStatistics.count(run));
+			return true;
+		}
+
+		@Override
+		public boolean endBuild() throws InterruptedException, IOException {
+			GuessingWindows.Counts total = action.getTotal();
+			listener.getLogger().println(action);
+
+			if(total.getCorrect() < total.getIncorrect()) {
+				build.setResult(Result.UNSTABLE);
+			}
+			return true;
+		}
 	}
 }
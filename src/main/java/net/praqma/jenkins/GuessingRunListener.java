@@ -28,8 +28,7 @@ import hudson.Extension;
 import hudson.model.TaskListener;
 import hudson.model.AbstractBuild;
 import hudson.model.listeners.RunListener;
-
-import java.util.Collection;
+import net.sf.json.JSONObject;
 
 /**
  *
@@ -38,24 +37,48 @@ import java.util.Collection;
 @Extension
 public class GuessingRunListener extends RunListener<AbstractBuild<?,?>> {
 
-    private static int countCorrect = 0;
-    private static int countIncorrect = 0;
-    
     @Override
     public void onCompleted(AbstractBuild<?,?> r, TaskListener tl) {
-        
-            Collection<GuessingBuildAction> actions = r.getActions(GuessingBuildAction.class);
-			for (GuessingBuildAction action : actions) {
-                if(action.isCorrect()) {
-                    countCorrect++;
-                } else {
-                    countIncorrect++;
-                }
-			}
+        long start = System.nanoTime();
+        try {
+            GuessingBuildSummary summary = GuessingBuildSummary.get(r);
+            GuessingCounters counters = GuessingCounters.get();
+            counters.record(summary.getCorrect(), summary.getIncorrect());
+
+            long countCorrect = counters.getCorrect();
+            long countIncorrect = counters.getIncorrect();
             tl.getLogger().println(String.format("%s answers in total while running", countCorrect+countIncorrect));
             tl.getLogger().println(String.format("%s correct answers", countCorrect));
             tl.getLogger().println(String.format("%s incorrect answers", countIncorrect));
-            super.onCompleted(r, tl);
+
+            // Also for builds without guesses, so the checkpoint of the store keeps up with the project
+            GuessingColumnStore.completed(r.getProject(), r);
+
+            if (summary.getGuesses() > 0) {
+                GuessingStatistics statistics = GuessingStatistics.get(r.getProject());
+                statistics.record(r);
+                GuessingLeaderboard.get().update(r.getProject(), statistics);
+
+                if (GuessingEvents.hasClients(r.getProject())) {
+                    JSONObject totals = GuessingEvents.totals(statistics);
+                    totals.put("build", r.getNumber());
+                    GuessingEvents.publish(r.getProject(), "totals", totals);
+                }
+            }
+        } finally {
+            GuessingMetrics.LISTENER_COMPLETED.record(start);
+        }
+        super.onCompleted(r, tl);
+    }
+
+    @Override
+    public void onDeleted(AbstractBuild<?,?> r) {
+        // Builds that never completed were never counted
+        if (!r.isBuilding() && GuessingStatistics.countGuesses(r) > 0) {
+            // Folded into the totals for good, so discarding old builds does not shrink them
+            GuessingStatistics.get(r.getProject()).compact(r);
+        }
+        super.onDeleted(r);
     }
 
 }
@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.model.InvisibleAction;
+
+/**
+ * Records the seed the guessing steps of a build were played with.
+ *
+ * Every {@link GuessingBuilder} step in the build gets its own {@link GuessingRandom}, derived from this seed and
+ * the position of the step. Starting a build with the seed as the {@value #PARAMETER} parameter replays it exactly.
+ *
+ * @author Praqma
+ */
+public class GuessingSeedAction extends InvisibleAction {
+
+    /**
+     * The build parameter overriding the seed of a build.
+     */
+    public static final String PARAMETER = "guessingSeed";
+
+    private final long seed;
+    private final GuessingSeedSource source;
+    private int steps;
+
+    public GuessingSeedAction(long seed, GuessingSeedSource source) {
+        this.seed = seed;
+        this.source = source;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the source that picked the seed, or null if it was given as build parameter
+     */
+    public GuessingSeedSource getSource() {
+        return source;
+    }
+
+    /**
+     * @return the generator for the next guessing step of the build
+     */
+    public synchronized GuessingRandom nextRandom() {
+        return new GuessingRandom(GuessingRandom.mix64(seed + steps++ * GuessingRandom.GOLDEN_GAMMA));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ways {@link GuessingBuilder} can pick the seed of the {@link GuessingRandom} used by a build.
+ *
+ * The source only decides the seed. Every build then plays its rounds with the same SplitMix64 generator, so the
+ * choice does not change how fast or how well the numbers are generated. Whatever the source, the seed is recorded on
+ * the build, so the run can be replayed exactly.
+ *
+ * @author Praqma
+ */
+public enum GuessingSeedSource {
+
+    /**
+     * Each executor thread draws seeds from its own generator. Nothing is shared between threads.
+     */
+    THREAD_LOCAL("Thread-local") {
+        @Override
+        long nextSeed(long fixedSeed, String job, int build) {
+            return LOCAL.get().nextLong();
+        }
+    },
+
+    /**
+     * Seeds are split off a single generator shared by all threads, which only costs one atomic add per build.
+     */
+    SPLITTABLE("Splittable") {
+        @Override
+        long nextSeed(long fixedSeed, String job, int build) {
+            return GuessingRandom.mix64(SEQUENCE.addAndGet(GuessingRandom.GOLDEN_GAMMA));
+        }
+    },
+
+    /**
+     * The seed is derived from the configured seed, the job and the build number, so every build of a job plays the
+     * same rounds every time.
+     */
+    SEEDED("Seeded (deterministic)") {
+        @Override
+        long nextSeed(long fixedSeed, String job, int build) {
+            return GuessingRandom.mix64(fixedSeed ^ GuessingRandom.mix64(job.hashCode()) + build * GuessingRandom.GOLDEN_GAMMA);
+        }
+    };
+
+    private static final AtomicLong SEQUENCE = new AtomicLong(GuessingRandom.mix64(System.currentTimeMillis() ^ System.nanoTime()));
+
+    private static final ThreadLocal<GuessingRandom> LOCAL = new ThreadLocal<GuessingRandom>() {
+        @Override
+        protected GuessingRandom initialValue() {
+            return new GuessingRandom(GuessingRandom.mix64(System.nanoTime() ^ Thread.currentThread().getId()));
+        }
+    };
+
+    private final String description;
+
+    private GuessingSeedSource(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @param fixedSeed the seed configured for the {@link #SEEDED} source
+     * @param job the full name of the job
+     * @param build the build number
+     * @return the seed for the given build
+     */
+    abstract long nextSeed(long fixedSeed, String job, int build);
+}
@@ -0,0 +1,309 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.remoting.VirtualChannel;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Plays a large number of rounds of the guessing game and only keeps aggregated results.
+ *
+ * The rounds are split into {@link Shard}s, each with its own {@link GuessingRandom} and its own counters, so shards
+ * run in parallel without sharing anything. The inner loop does not allocate. Given the same seed and the same
+ * number of shards, a simulation always gives the same result, no matter how the shards are scheduled.
+ *
+ * A simulation can also be spread over several agents, see {@link #run(List, Integer)}. Each agent then plays its
+ * share of the rounds on its own threads, and only the aggregated results travel back over the channel.
+ *
+ * @author Praqma
+ */
+public class GuessingSimulation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int lower;
+    private final int upper;
+    private final long rounds;
+    private final long seed;
+
+    public GuessingSimulation(int lower, int upper, long rounds, long seed) {
+        this.lower = lower;
+        this.upper = upper;
+        this.rounds = rounds;
+        this.seed = seed;
+    }
+
+    /**
+     * @param index the index of the shard, counting from 0
+     * @param count the number of shards
+     * @return the given part of the rounds
+     */
+    public Shard shard(int index, int count) {
+        long shardRounds = rounds / count + (index < rounds % count ? 1 : 0);
+        return new Shard(lower, upper, shardRounds, GuessingRandom.mix64(seed + index * GuessingRandom.GOLDEN_GAMMA));
+    }
+
+    /**
+     * Runs the simulation.
+     *
+     * @param shards the number of shards to split the rounds into
+     * @param executor the executor running the shards
+     * @return the merged results of all shards
+     * @throws InterruptedException if interrupted while waiting for the shards, which are then cancelled
+     * @throws ExecutionException if a shard failed
+     */
+    public Result run(int shards, ExecutorService executor) throws InterruptedException, ExecutionException {
+        List<Future<Result>> futures = new ArrayList<Future<Result>>(shards);
+        try {
+            for (int i = 0; i < shards; i++) {
+                futures.add(executor.submit(shard(i, shards)));
+            }
+            Result result = new Result(lower, upper);
+            for (Future<Result> future : futures) {
+                result.merge(future.get());
+            }
+            return result;
+        } finally {
+            for (Future<Result> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Runs the simulation on one or more agents, one shard per agent.
+     *
+     * @param channels the channels to the agents
+     * @param threads the number of threads each agent plays on, or null to use all its cores
+     * @return the merged results of all agents
+     * @throws IOException if the communication with an agent failed
+     * @throws InterruptedException if interrupted while waiting for the agents, which are then cancelled
+     * @throws ExecutionException if an agent failed
+     */
+    public Result run(List<VirtualChannel> channels, Integer threads) throws IOException, InterruptedException, ExecutionException {
+        List<Future<Result>> futures = new ArrayList<Future<Result>>(channels.size());
+        try {
+            for (int i = 0; i < channels.size(); i++) {
+                futures.add(channels.get(i).callAsync(new RemoteShard(shard(i, channels.size()), threads)));
+            }
+            Result result = new Result(lower, upper);
+            for (Future<Result> future : futures) {
+                result.merge(future.get());
+            }
+            return result;
+        } finally {
+            for (Future<Result> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * A part of the rounds of a simulation.
+     */
+    public static class Shard implements Callable<Result>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int lower;
+        private final int upper;
+        private final long rounds;
+        private final long seed;
+
+        Shard(int lower, int upper, long rounds, long seed) {
+            this.lower = lower;
+            this.upper = upper;
+            this.rounds = rounds;
+            this.seed = seed;
+        }
+
+        public long getRounds() {
+            return rounds;
+        }
+
+        @Override
+        public Result call() throws InterruptedException {
+            GuessingRandom rnd = new GuessingRandom(seed);
+            int range = upper - lower + 1;
+            long[] distribution = new long[range];
+            long hits = 0;
+            for (long i = 0; i < rounds; i++) {
+                int guess = rnd.nextInt(range);
+                int number = rnd.nextInt(range);
+                distribution[number]++;
+                if (guess == number) {
+                    hits++;
+                }
+                if ((i & 0xFFFFF) == 0xFFFFF && Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return new Result(lower, upper, rounds, hits, distribution);
+        }
+    }
+
+    /**
+     * A shard sent to an agent, where it is split once more over the cores of the agent.
+     */
+    private static class RemoteShard implements hudson.remoting.Callable<Result, Exception> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Shard shard;
+        private final Integer threads;
+
+        RemoteShard(Shard shard, Integer threads) {
+            this.shard = shard;
+            this.threads = threads;
+        }
+
+        @Override
+        public Result call() throws Exception {
+            int count = threads == null || threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+            ExecutorService executor = Executors.newFixedThreadPool(count, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Guessing simulation");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            try {
+                return new GuessingSimulation(shard.lower, shard.upper, shard.rounds, shard.seed).run(count, executor);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * The aggregated results of a simulation, or a part of it.
+     */
+    public static class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The z-score of a 95% confidence interval.
+         */
+        private static final double Z = 1.96;
+
+        private final int lower;
+        private final int upper;
+        private long rounds;
+        private long hits;
+        private final long[] distribution;
+
+        public Result(int lower, int upper) {
+            this(lower, upper, 0, 0, new long[upper - lower + 1]);
+        }
+
+        Result(int lower, int upper, long rounds, long hits, long[] distribution) {
+            this.lower = lower;
+            this.upper = upper;
+            this.rounds = rounds;
+            this.hits = hits;
+            this.distribution = distribution;
+        }
+
+        /**
+         * Adds the results of another part of the same simulation.
+         *
+         * @param other the other results
+         */
+        public void merge(Result other) {
+            if (other.lower != lower || other.upper != upper) {
+                throw new IllegalArgumentException("Cannot merge results of different ranges");
+            }
+            rounds += other.rounds;
+            hits += other.hits;
+            for (int i = 0; i < distribution.length; i++) {
+                distribution[i] += other.distribution[i];
+            }
+        }
+
+        public int getLower() {
+            return lower;
+        }
+
+        public int getUpper() {
+            return upper;
+        }
+
+        public long getRounds() {
+            return rounds;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @param number a number between lower and upper
+         * @return the number of times the given number was rolled
+         */
+        public long getRolled(int number) {
+            return distribution[number - lower];
+        }
+
+        public double getHitRate() {
+            return rounds == 0 ? 0 : (double) hits / rounds;
+        }
+
+        /**
+         * @return the lower end of the 95% Wilson score interval of the hit rate
+         */
+        public double getConfidenceLow() {
+            return wilson(-1);
+        }
+
+        /**
+         * @return the upper end of the 95% Wilson score interval of the hit rate
+         */
+        public double getConfidenceHigh() {
+            return wilson(1);
+        }
+
+        private double wilson(int sign) {
+            if (rounds == 0) {
+                return 0;
+            }
+            double n = rounds;
+            double p = getHitRate();
+            double center = p + Z * Z / (2 * n);
+            double margin = Z * Math.sqrt(p * (1 - p) / n + Z * Z / (4 * n * n));
+            return (center + sign * margin) / (1 + Z * Z / n);
+        }
+    }
+}
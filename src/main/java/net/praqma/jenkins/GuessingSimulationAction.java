@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.model.Action;
+
+/**
+ * The aggregated results of a {@link GuessingSimulationBuilder} step.
+ *
+ * @author Praqma
+ */
+public class GuessingSimulationAction implements Action {
+
+    private final int index;
+    private final GuessingSimulation.Result result;
+    private final int threads;
+    private final boolean distributed;
+    private final long duration;
+
+    /**
+     * @param index the index of the simulation within the build
+     * @param result the aggregated results
+     * @param threads the number of threads the rounds were played on, or the number of agents when distributed
+     * @param distributed whether the rounds were played on agents
+     * @param duration the time it took to play all rounds, in milliseconds
+     */
+    public GuessingSimulationAction(int index, GuessingSimulation.Result result, int threads, boolean distributed, long duration) {
+        this.index = index;
+        this.result = result;
+        this.threads = threads;
+        this.distributed = distributed;
+        this.duration = duration;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/guessing-game/images/64x64/guess.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Simulation " + index;
+    }
+
+    @Override
+    public String getUrlName() {
+        return "simulation" + index;
+    }
+
+    public GuessingSimulation.Result getResult() {
+        return result;
+    }
+
+    /**
+     * @return the number of threads the rounds were played on, or the number of agents when distributed
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isDistributed() {
+        return distributed;
+    }
+
+    /**
+     * @return the time it took to play all rounds, in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - %s - %s", result.getRounds(), result.getHits(), result.getHitRate());
+    }
+}
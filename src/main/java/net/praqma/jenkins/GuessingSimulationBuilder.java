@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.FormValidation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jenkins.model.Jenkins;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * A build step playing millions of rounds of the guessing game on all cores, using the game as a load generator.
+ *
+ * Contrary to {@link GuessingBuilder} the individual rounds are not kept, only the aggregated results are added to
+ * the build as a {@link GuessingSimulationAction}.
+ *
+ * The rounds are played on the master by default. When distributed, they are split over all online agents with the
+ * configured label, or sent to the agent running the build, taking the load off the master. A distributed
+ * simulation never runs on the master: without a label, a build running on the master fails.
+ *
+ * @author Praqma
+ */
+public class GuessingSimulationBuilder extends Builder {
+
+    public final Integer lower, upper;
+    public final Long rounds;
+
+    /**
+     * The number of threads to play on. All cores when not configured.
+     */
+    public final Integer threads;
+
+    /**
+     * Whether to play the rounds on agents instead of on the master.
+     */
+    public final boolean distributed;
+
+    /**
+     * The label of the agents to play on when distributed. When empty the rounds are played on the agent running
+     * the build.
+     */
+    public final String label;
+
+    @DataBoundConstructor
+    public GuessingSimulationBuilder(final Integer lower, final Integer upper, final Long rounds, final Integer threads, final boolean distributed, final String label) {
+        this.lower = lower;
+        this.upper = upper;
+        this.rounds = rounds;
+        this.threads = threads;
+        this.distributed = distributed;
+        this.label = Util.fixEmptyAndTrim(label);
+    }
+
+    /**
+     * @return the number of threads to play on
+     */
+    public int getThreads() {
+        return threads == null || threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    @Override
+    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+        FormValidation validation = GuessingBuilder.GuessingBuilderImpl.checkBounds(upper, lower);
+        if(validation.kind == FormValidation.Kind.ERROR) {
+            listener.error(validation.getMessage());
+            return false;
+        }
+        if(rounds == null || rounds < 1) {
+            listener.error("The number of rounds must be positive");
+            return false;
+        }
+
+        GuessingRandom rnd = GuessingBuilder.createRandom(build, listener);
+        if(rnd == null) {
+            return false;
+        }
+        GuessingSimulation simulation = new GuessingSimulation(lower, upper, rounds, rnd.nextLong());
+        int shards;
+        long start = System.currentTimeMillis();
+        GuessingSimulation.Result result;
+        try {
+            if(distributed) {
+                List<VirtualChannel> channels = getChannels(build, launcher);
+                if(channels.isEmpty()) {
+                    if(label == null) {
+                        listener.error("Without a label the rounds are played on the agent running the build, but this build runs on the master. Configure a label or run the job on an agent");
+                    } else {
+                        listener.error(String.format("No online agents with the label '%s'", label));
+                    }
+                    return false;
+                }
+                shards = channels.size();
+                listener.getLogger().println(String.format("Simulating %s rounds between %s and %s on %s agents", rounds, lower, upper, shards));
+                result = simulation.run(channels, threads);
+            } else {
+                shards = getThreads();
+                listener.getLogger().println(String.format("Simulating %s rounds between %s and %s on %s threads", rounds, lower, upper, shards));
+                ExecutorService executor = Executors.newFixedThreadPool(shards, new DaemonThreadFactory());
+                try {
+                    result = simulation.run(shards, executor);
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace(listener.error("Simulation failed"));
+            return false;
+        }
+        long duration = System.currentTimeMillis() - start;
+
+        int index = build.getActions(GuessingSimulationAction.class).size() + 1;
+        build.addAction(new GuessingSimulationAction(index, result, shards, distributed, duration));
+
+        listener.getLogger().println(String.format("%s hits out of %s rounds (%.4f%%) in %s ms", result.getHits(), result.getRounds(), result.getHitRate() * 100, duration));
+        return true;
+    }
+
+    /**
+     * @return the channels to all online agents with the configured label, or to the agent running the build if no
+     * label is configured. The master is never among the agents, even if it has the label or runs the build.
+     */
+    private List<VirtualChannel> getChannels(AbstractBuild<?, ?> build, Launcher launcher) {
+        List<VirtualChannel> channels = new ArrayList<VirtualChannel>();
+        Jenkins jenkins = Jenkins.getInstance();
+        if(label == null) {
+            Node node = build.getBuiltOn();
+            if(node != null && node != jenkins && launcher.getChannel() != null) {
+                channels.add(launcher.getChannel());
+            }
+            return channels;
+        }
+        for(Node node : jenkins.getLabel(label).getNodes()) {
+            if(node == jenkins) {
+                continue;
+            }
+            Computer computer = node.toComputer();
+            VirtualChannel channel = computer == null ? null : computer.getChannel();
+            if(channel != null) {
+                channels.add(channel);
+            }
+        }
+        return channels;
+    }
+
+    @Extension
+    public static class DescriptorImpl extends BuildStepDescriptor<Builder> {
+
+        @Override
+        public boolean isApplicable(Class<? extends AbstractProject> proj) {
+            return true;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Simulate guessing rounds";
+        }
+
+        public FormValidation doCheckLower(@QueryParameter Integer upper, @QueryParameter Integer lower) {
+            return GuessingBuilder.GuessingBuilderImpl.checkLower(upper, lower);
+        }
+
+        public FormValidation doCheckUpper(@QueryParameter Integer upper, @QueryParameter Integer lower) {
+            return GuessingBuilder.GuessingBuilderImpl.checkUpper(upper, lower);
+        }
+
+        public FormValidation doCheckRounds(@QueryParameter Long rounds) {
+            if(rounds != null && rounds < 1) {
+                return FormValidation.error("Has to be positive");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckThreads(@QueryParameter Integer threads) {
+            if(threads != null && threads < 1) {
+                return FormValidation.error("Has to be positive");
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import com.google.inject.Inject;
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.FormValidation;
+import hudson.util.NamingThreadFactory;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * The Pipeline counterpart of {@link GuessingSimulationBuilder}: <code>guessingSimulation lower: 1, upper: 6, rounds:
+ * 100000000</code> plays the rounds and returns the hit rate.
+ *
+ * The rounds are played on a background thread, so the step neither blocks the Pipeline engine nor needs an executor
+ * of its own. Inside a <code>node</code> block they are played on that node, otherwise on the master. The step can be
+ * aborted, which interrupts the rounds. The seed is picked once and kept with the step, so when Jenkins restarts while
+ * the step runs the rounds are played again from the start with the same outcome.
+ *
+ * @author Praqma
+ */
+public class GuessingSimulationStep extends AbstractStepImpl {
+
+    public final Integer lower, upper;
+    public final Long rounds;
+
+    /**
+     * The number of threads to play on. All cores when not configured.
+     */
+    public final Integer threads;
+
+    @DataBoundConstructor
+    public GuessingSimulationStep(Integer lower, Integer upper, Long rounds, Integer threads) {
+        this.lower = lower;
+        this.upper = upper;
+        this.rounds = rounds;
+        this.threads = threads;
+    }
+
+    /**
+     * Runs the simulations of all Pipeline steps. Each simulation plays its rounds on a pool of its own.
+     */
+    private static final ExecutorService SIMULATIONS = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), GuessingSimulationStep.class.getSimpleName()));
+
+    public static class Execution extends AbstractStepExecutionImpl {
+
+        private static final long serialVersionUID = 1L;
+
+        @Inject(optional = true)
+        private transient GuessingSimulationStep step;
+
+        private int lower, upper;
+        private long rounds;
+        private Integer threads;
+        private long seed;
+
+        private transient volatile Future<?> task;
+
+        /**
+         * Set once stop has failed the step, so the interrupted simulation does not complete it a second time.
+         */
+        private transient volatile boolean stopped;
+
+        @Override
+        public boolean start() throws Exception {
+            FormValidation validation = GuessingBuilder.GuessingBuilderImpl.checkBounds(step.upper, step.lower);
+            if(validation.kind == FormValidation.Kind.ERROR) {
+                throw new AbortException(validation.getMessage());
+            }
+            if(step.rounds == null || step.rounds < 1) {
+                throw new AbortException("The number of rounds must be positive");
+            }
+            lower = step.lower;
+            upper = step.upper;
+            rounds = step.rounds;
+            threads = step.threads;
+
+            EnvVars env = getContext().get(EnvVars.class);
+            String parameter = env == null ? null : env.get(GuessingSeedAction.PARAMETER);
+            GuessingRandom rnd = GuessingBuilder.createRandom(getContext().get(Run.class), parameter, getContext().get(TaskListener.class));
+            if(rnd == null) {
+                throw new AbortException("Malformed " + GuessingSeedAction.PARAMETER + " parameter");
+            }
+            seed = rnd.nextLong();
+
+            launch();
+            return false;
+        }
+
+        @Override
+        public void onResume() {
+            super.onResume();
+            try {
+                getContext().get(TaskListener.class).getLogger().println("Jenkins restarted while simulating, playing the rounds again");
+                launch();
+            } catch (Exception e) {
+                getContext().onFailure(e);
+            }
+        }
+
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            stopped = true;
+            Future<?> running = task;
+            if(running != null) {
+                running.cancel(true);
+            }
+            getContext().onFailure(cause);
+        }
+
+        private void launch() throws Exception {
+            final StepContext context = getContext();
+            final Run<?, ?> run = context.get(Run.class);
+            final TaskListener listener = context.get(TaskListener.class);
+            FilePath workspace = context.get(FilePath.class);
+            final VirtualChannel channel = workspace == null ? null : workspace.getChannel();
+            final GuessingSimulation simulation = new GuessingSimulation(lower, upper, rounds, seed);
+
+            task = SIMULATIONS.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long start = System.currentTimeMillis();
+                        GuessingSimulation.Result result;
+                        int shards;
+                        if(channel != null) {
+                            shards = 1;
+                            listener.getLogger().println(String.format("Simulating %s rounds between %s and %s on the current node", rounds, lower, upper));
+                            result = simulation.run(Collections.singletonList(channel), threads);
+                        } else {
+                            shards = threads == null || threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+                            listener.getLogger().println(String.format("Simulating %s rounds between %s and %s on %s threads", rounds, lower, upper, shards));
+                            ExecutorService executor = Executors.newFixedThreadPool(shards, new DaemonThreadFactory());
+                            try {
+                                result = simulation.run(shards, executor);
+                            } finally {
+                                executor.shutdownNow();
+                            }
+                        }
+                        long duration = System.currentTimeMillis() - start;
+
+                        synchronized(run) {
+                            int index = run.getActions(GuessingSimulationAction.class).size() + 1;
+                            run.addAction(new GuessingSimulationAction(index, result, shards, channel != null, duration));
+                        }
+                        run.save();
+
+                        listener.getLogger().println(String.format("%s hits out of %s rounds (%.4f%%) in %s ms", result.getHits(), result.getRounds(), result.getHitRate() * 100, duration));
+                        context.onSuccess(result.getHitRate());
+                    } catch (InterruptedException e) {
+                        // Unless stop has already failed the step, something else interrupted the simulation, and
+                        // the step would otherwise never complete
+                        if(!stopped) {
+                            context.onFailure(e);
+                        }
+                    } catch (ExecutionException e) {
+                        context.onFailure(e.getCause());
+                    } catch (Exception e) {
+                        context.onFailure(e);
+                    }
+                }
+            });
+        }
+    }
+
+    @Extension(optional = true)
+    public static class DescriptorImpl extends AbstractStepDescriptorImpl {
+
+        public DescriptorImpl() {
+            super(Execution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "guessingSimulation";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Simulate guessing rounds";
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The distribution of a stream of long values, in fixed memory whatever the number or the range of the values.
+ *
+ * <ul>
+ * <li>Quantiles come from a histogram with logarithmic buckets, so any quantile is within {@value #ACCURACY} of the
+ * true value, relatively.</li>
+ * <li>How often a value occurred is estimated by a count-min sketch, which never underestimates, and overestimates by
+ * at most a small share of all values with high probability.</li>
+ * <li>The {@value #HEAVY_HITTERS} values estimated to occur the most are tracked as heavy hitters.</li>
+ * </ul>
+ *
+ * Not thread safe. The buckets and counters are persisted packed, like {@link GuessingBatchAction}.
+ *
+ * @author Praqma
+ */
+public class GuessingSketch {
+
+    static final double ACCURACY = 0.01;
+    static final int HEAVY_HITTERS = 10;
+
+    private static final double GAMMA = (1 + ACCURACY) / (1 - ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    /**
+     * The index of the bucket holding the largest magnitude, 2^63.
+     */
+    private static final int MAX_INDEX = (int) Math.ceil(63 * Math.log(2) / LOG_GAMMA);
+
+    /**
+     * Buckets of negative values, zero and positive values, in ascending order of their values.
+     */
+    private static final int BUCKETS = 2 * (MAX_INDEX + 1) + 1;
+    private static final int ZERO = MAX_INDEX + 1;
+
+    private static final double[] QUANTILES = { 0.01, 0.5, 0.9, 0.99 };
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1024;
+
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * The non-empty buckets, as pairs of a 4 byte index and an 8 byte count.
+     */
+    private byte[] histogram;
+
+    /**
+     * The count-min counters, 8 bytes each.
+     */
+    private byte[] frequencies;
+
+    private long[] heavyHitters;
+
+    private transient long[] buckets = new long[BUCKETS];
+    private transient long[] counters = new long[DEPTH * WIDTH];
+    private transient long[] hitterValues = new long[HEAVY_HITTERS];
+    private transient long[] hitterCounts = new long[HEAVY_HITTERS];
+    private transient int hitters;
+
+    private Object writeReplace() {
+        int used = 0;
+        for (long bucket : buckets) {
+            if (bucket != 0) {
+                used++;
+            }
+        }
+        ByteBuffer packed = ByteBuffer.allocate(used * 12);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (buckets[i] != 0) {
+                packed.putInt(i).putLong(buckets[i]);
+            }
+        }
+        histogram = packed.array();
+
+        packed = ByteBuffer.allocate(counters.length * 8);
+        packed.asLongBuffer().put(counters);
+        frequencies = packed.array();
+
+        long[] values = new long[hitters];
+        System.arraycopy(hitterValues, 0, values, 0, hitters);
+        heavyHitters = values;
+        return this;
+    }
+
+    private Object readResolve() {
+        buckets = new long[BUCKETS];
+        if (histogram != null) {
+            ByteBuffer packed = ByteBuffer.wrap(histogram);
+            while (packed.remaining() >= 12) {
+                int index = packed.getInt();
+                long bucket = packed.getLong();
+                if (index >= 0 && index < BUCKETS) {
+                    buckets[index] = bucket;
+                }
+            }
+        }
+        counters = new long[DEPTH * WIDTH];
+        if (frequencies != null && frequencies.length == counters.length * 8) {
+            ByteBuffer.wrap(frequencies).asLongBuffer().get(counters);
+        }
+        hitterValues = new long[HEAVY_HITTERS];
+        hitterCounts = new long[HEAVY_HITTERS];
+        hitters = 0;
+        if (heavyHitters != null) {
+            for (long value : heavyHitters) {
+                offer(value, estimate(value));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @param value a value of the stream
+     */
+    public void add(long value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        buckets[bucket(value)]++;
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int i = row * WIDTH + column(value, row);
+            estimate = Math.min(estimate, ++counters[i]);
+        }
+        offer(value, estimate);
+    }
+
+    /**
+     * Adds all values of another sketch to this one.
+     */
+    public void merge(GuessingSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+
+        long[] candidates = new long[hitters + other.hitters];
+        System.arraycopy(hitterValues, 0, candidates, 0, hitters);
+        System.arraycopy(other.hitterValues, 0, candidates, hitters, other.hitters);
+        hitters = 0;
+        for (long candidate : candidates) {
+            offer(candidate, estimate(candidate));
+        }
+    }
+
+    /**
+     * Keeps the value as a heavy hitter if it is one, or occurs more often than the least frequent heavy hitter.
+     */
+    private void offer(long value, long estimate) {
+        int least = -1;
+        for (int i = 0; i < hitters; i++) {
+            if (hitterValues[i] == value) {
+                hitterCounts[i] = Math.max(hitterCounts[i], estimate);
+                return;
+            }
+            if (least < 0 || hitterCounts[i] < hitterCounts[least]) {
+                least = i;
+            }
+        }
+        if (hitters < HEAVY_HITTERS) {
+            hitterValues[hitters] = value;
+            hitterCounts[hitters++] = estimate;
+        } else if (estimate > hitterCounts[least]) {
+            hitterValues[least] = value;
+            hitterCounts[least] = estimate;
+        }
+    }
+
+    private static int bucket(long value) {
+        if (value == 0) {
+            return ZERO;
+        }
+        double magnitude = value > 0 ? value : -(double) value;
+        int index = Math.min(MAX_INDEX, Math.max(0, (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA)));
+        return value > 0 ? ZERO + 1 + index : ZERO - 1 - index;
+    }
+
+    /**
+     * @return the value in the middle of the given bucket, within {@link #ACCURACY} of all its values
+     */
+    private static double value(int bucket) {
+        if (bucket == ZERO) {
+            return 0;
+        }
+        int index = bucket > ZERO ? bucket - ZERO - 1 : ZERO - 1 - bucket;
+        double magnitude = 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+        return bucket > ZERO ? magnitude : -magnitude;
+    }
+
+    private static int column(long value, int row) {
+        return (int) (GuessingRandom.mix64(value + (row + 1) * GuessingRandom.GOLDEN_GAMMA) >>> 1) & (WIDTH - 1);
+    }
+
+    /**
+     * @param value a value
+     * @return how often the value occurred, possibly overestimated
+     */
+    public long estimate(long value) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters[row * WIDTH + column(value, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @param quantile between 0 and 1, like 0.5 for the median
+     * @return the value at the given quantile, within {@value #ACCURACY} of the true value, or 0 if the sketch is
+     * empty
+     */
+    public long getQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        double rank = Math.max(0, Math.min(1, quantile)) * (count - 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen > rank) {
+                double value = value(i);
+                return value <= min ? min : value >= max ? max : Math.round(value);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the 1st, 50th, 90th and 99th percentiles
+     */
+    public List<Quantile> getQuantiles() {
+        List<Quantile> list = new ArrayList<Quantile>(QUANTILES.length);
+        for (double quantile : QUANTILES) {
+            list.add(new Quantile(quantile, getQuantile(quantile)));
+        }
+        return list;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the smallest value, or Long.MAX_VALUE if the sketch is empty
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest value, or Long.MIN_VALUE if the sketch is empty
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the values estimated to occur the most, most frequent first
+     */
+    public List<HeavyHitter> getHeavyHitters() {
+        List<HeavyHitter> list = new ArrayList<HeavyHitter>(hitters);
+        for (int i = 0; i < hitters; i++) {
+            list.add(new HeavyHitter(hitterValues[i], hitterCounts[i]));
+        }
+        Collections.sort(list, new Comparator<HeavyHitter>() {
+            @Override
+            public int compare(HeavyHitter a, HeavyHitter b) {
+                return a.count < b.count ? 1 : a.count > b.count ? -1 : 0;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * A quantile and the value at it.
+     */
+    public static class Quantile {
+        private final double quantile;
+        private final long value;
+
+        Quantile(double quantile, long value) {
+            this.quantile = quantile;
+            this.value = value;
+        }
+
+        public double getQuantile() {
+            return quantile;
+        }
+
+        public long getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * A value and how often it is estimated to have occurred.
+     */
+    public static class HeavyHitter {
+        private final long value;
+        private final long count;
+
+        HeavyHitter(long value, long count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
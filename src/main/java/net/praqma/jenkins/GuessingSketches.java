@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.BulkChange;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Saveable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+/**
+ * The distributions of the guesses and rolled numbers of all {@link GuessingWideRangeBuilder} rounds of a project,
+ * persisted next to the job configuration. The rounds themselves are not kept, so the size of this does not depend on
+ * how many were played or on their range.
+ *
+ * @author Praqma
+ */
+public class GuessingSketches implements Saveable {
+
+    private static final Logger LOGGER = Logger.getLogger(GuessingSketches.class.getName());
+
+    static final String FILE_NAME = "guessing-sketches.xml";
+
+    private static final Map<AbstractProject<?,?>, GuessingSketches> INSTANCES = new WeakHashMap<AbstractProject<?,?>, GuessingSketches>();
+
+    private transient AbstractProject<?,?> project;
+
+    private long rounds;
+    private long hits;
+    private GuessingSketch guesses = new GuessingSketch();
+    private GuessingSketch numbers = new GuessingSketch();
+
+    /**
+     * @param project the project
+     * @return the sketches of the given project, empty if it has played no wide-range rounds yet
+     */
+    public static GuessingSketches get(AbstractProject<?,?> project) {
+        synchronized (INSTANCES) {
+            GuessingSketches sketches = INSTANCES.get(project);
+            if (sketches == null) {
+                sketches = load(project);
+                INSTANCES.put(project, sketches);
+            }
+            return sketches;
+        }
+    }
+
+    /**
+     * @param project the project
+     * @return the sketches of the given project, or null if it has played no wide-range rounds
+     */
+    public static GuessingSketches peek(AbstractProject<?,?> project) {
+        synchronized (INSTANCES) {
+            GuessingSketches sketches = INSTANCES.get(project);
+            if (sketches == null && getConfigFile(project).exists()) {
+                sketches = load(project);
+                INSTANCES.put(project, sketches);
+            }
+            return sketches;
+        }
+    }
+
+    private static GuessingSketches load(AbstractProject<?,?> project) {
+        XmlFile file = getConfigFile(project);
+        GuessingSketches sketches = null;
+        if (file.exists()) {
+            try {
+                sketches = (GuessingSketches) file.read();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load " + file + ", starting over", e);
+            } catch (ClassCastException e) {
+                LOGGER.log(Level.WARNING, "Unexpected content in " + file + ", starting over", e);
+            }
+        }
+        if (sketches == null) {
+            sketches = new GuessingSketches();
+        }
+        sketches.project = project;
+        return sketches;
+    }
+
+    private static XmlFile getConfigFile(AbstractProject<?,?> project) {
+        return new XmlFile(Jenkins.XSTREAM, new File(project.getRootDir(), FILE_NAME));
+    }
+
+    /**
+     * Adds the rounds of a build step.
+     *
+     * @param stepGuesses the guesses of the step
+     * @param stepNumbers the rolled numbers of the step
+     * @param stepHits the number of correct guesses of the step
+     */
+    public synchronized void record(GuessingSketch stepGuesses, GuessingSketch stepNumbers, long stepHits) throws IOException {
+        rounds += stepGuesses.getCount();
+        hits += stepHits;
+        guesses.merge(stepGuesses);
+        numbers.merge(stepNumbers);
+        save();
+    }
+
+    public synchronized long getRounds() {
+        return rounds;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return a copy of the distribution of the guesses
+     */
+    public synchronized GuessingSketch getGuesses() {
+        return copy(guesses);
+    }
+
+    /**
+     * @return a copy of the distribution of the rolled numbers
+     */
+    public synchronized GuessingSketch getNumbers() {
+        return copy(numbers);
+    }
+
+    private static GuessingSketch copy(GuessingSketch sketch) {
+        GuessingSketch copy = new GuessingSketch();
+        copy.merge(sketch);
+        return copy;
+    }
+
+    @Override
+    public synchronized void save() throws IOException {
+        if (BulkChange.contains(this)) {
+            return;
+        }
+        getConfigFile(project).write(this);
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.BulkChange;
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Saveable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+/**
+ * The accumulated guessing statistics of a single project.
+ *
+ * Instead of walking the entire build history every time the statistics are shown, the totals are updated once
+ * when a build completes (see {@link GuessingRunListener}) and persisted next to the job configuration. The history
+ * is only scanned when no statistics file exists yet, e.g. right after the plugin has been installed, or when the
+ * file cannot be read. That rebuild runs in the background, see {@link GuessingBuildScanner}, and until it is done the
+ * statistics only hold the builds completed in the meantime.
+ *
+ * Deleted builds, like those discarded by a log rotator, stay in the totals. Their guesses are kept as a compacted
+ * aggregate, which a rebuild adds to the builds it finds on disk. The trend and the windows keep a deleted build until
+ * the next rebuild, which only refills them from the builds still on disk.
+ *
+ * @author Praqma
+ */
+public class GuessingStatistics implements Saveable {
+
+    private static final Logger LOGGER = Logger.getLogger(GuessingStatistics.class.getName());
+
+    static final String FILE_NAME = "guessing-statistics.xml";
+
+    /**
+     * One instance per project, so every reader and writer synchronizes on the same object.
+     */
+    private static final Map<AbstractProject<?,?>, GuessingStatistics> INSTANCES = new WeakHashMap<AbstractProject<?,?>, GuessingStatistics>();
+
+    private transient AbstractProject<?,?> project;
+
+    private long correct;
+    private long incorrect;
+
+    /**
+     * The guesses of deleted builds, included in the totals.
+     */
+    private long compactedCorrect;
+    private long compactedIncorrect;
+    private long compactedBuilds;
+    private GuessingTrend trend = new GuessingTrend();
+    private GuessingWindows windows = new GuessingWindows();
+
+    /**
+     * When a build was last added, in milliseconds since the epoch.
+     */
+    private long lastUpdated;
+
+    /**
+     * The rebuild in progress, or null.
+     */
+    private transient Rebuild rebuild;
+
+    /**
+     * The state of a rebuild. Builds completed or deleted while the build records are scanned are tracked, so they
+     * are neither lost nor counted twice when the scan is merged in.
+     */
+    private static final class Rebuild {
+        private final GuessingBuildScanner.Progress progress = new GuessingBuildScanner.Progress();
+        private final Set<Integer> skip = new HashSet<Integer>();
+        private final SortedMap<Integer, long[]> live = new TreeMap<Integer, long[]>();
+    }
+
+    /**
+     * @param project the project
+     * @return the statistics of the given project, loaded from disk or, the first time, empty while they are rebuilt
+     * in the background
+     */
+    public static GuessingStatistics get(AbstractProject<?,?> project) {
+        synchronized (INSTANCES) {
+            GuessingStatistics statistics = INSTANCES.get(project);
+            if (statistics == null) {
+                statistics = load(project);
+                INSTANCES.put(project, statistics);
+            }
+            return statistics;
+        }
+    }
+
+    /**
+     * @param project the project
+     * @return the statistics of the given project, or null if the project has none on disk yet. Never scans the
+     * build history.
+     */
+    public static GuessingStatistics peek(AbstractProject<?,?> project) {
+        synchronized (INSTANCES) {
+            GuessingStatistics statistics = INSTANCES.get(project);
+            if (statistics == null && getConfigFile(project).exists()) {
+                statistics = load(project);
+                INSTANCES.put(project, statistics);
+            }
+            return statistics;
+        }
+    }
+
+    /**
+     * Reads the statistics of the project from disk, bypassing the instance kept for it.
+     */
+    static GuessingStatistics load(AbstractProject<?,?> project) {
+        XmlFile file = getConfigFile(project);
+        if (file.exists()) {
+            try {
+                GuessingStatistics statistics = (GuessingStatistics) file.read();
+                statistics.project = project;
+                if (statistics.trend == null) {
+                    statistics.trend = new GuessingTrend();
+                }
+                if (statistics.windows == null) {
+                    statistics.windows = new GuessingWindows();
+                }
+                return statistics;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load " + file + ", rebuilding it from the build records", e);
+            } catch (ClassCastException e) {
+                LOGGER.log(Level.WARNING, "Unexpected content in " + file + ", rebuilding it from the build records", e);
+            }
+        }
+
+        GuessingStatistics statistics = new GuessingStatistics();
+        statistics.project = project;
+        statistics.rebuild();
+        return statistics;
+    }
+
+    private static XmlFile getConfigFile(AbstractProject<?,?> project) {
+        return new XmlFile(Jenkins.XSTREAM, new File(project.getRootDir(), FILE_NAME));
+    }
+
+    /**
+     * Adds the guesses of a completed build to the totals.
+     *
+     * @param build the completed build
+     */
+    public synchronized void record(AbstractBuild<?,?> build) {
+        int[] counts = count(build);
+        if (counts[0] + counts[1] == 0) {
+            return;
+        }
+        correct += counts[0];
+        incorrect += counts[1];
+        lastUpdated = System.currentTimeMillis();
+        if (rebuild != null) {
+            rebuild.skip.add(build.getNumber());
+            rebuild.live.put(build.getNumber(), new long[] { counts[0], counts[1], getCompleted(build) });
+        } else {
+            trend.add(build.getNumber(), counts[0], counts[1]);
+            windows.add(build.getNumber(), getCompleted(build), counts[0], counts[1]);
+            trySave();
+        }
+    }
+
+    /**
+     * Folds the guesses of a build about to be deleted into the compacted aggregate, so they stay in the totals once
+     * the build is gone.
+     *
+     * @param build the build being deleted
+     */
+    public synchronized void compact(AbstractBuild<?,?> build) {
+        int[] counts = count(build);
+        if (counts[0] + counts[1] == 0) {
+            return;
+        }
+        compactedCorrect += counts[0];
+        compactedIncorrect += counts[1];
+        compactedBuilds++;
+        lastUpdated = System.currentTimeMillis();
+        if (rebuild != null) {
+            // The rebuild will not find the build on disk. Until it is done the totals are the compacted aggregate
+            // and the builds completed since it started.
+            rebuild.skip.add(build.getNumber());
+            if (rebuild.live.remove(build.getNumber()) == null) {
+                correct += counts[0];
+                incorrect += counts[1];
+            }
+        } else {
+            trySave();
+        }
+    }
+
+    /**
+     * Recalculates the totals from the build records of the project and the compacted aggregate, in the background.
+     * Until the rebuild is done the totals only hold the compacted aggregate and the builds completed in the meantime.
+     */
+    public synchronized void rebuild() {
+        if (rebuild != null) {
+            return;
+        }
+        final Rebuild current = new Rebuild();
+        // Running builds are counted when they complete
+        for (AbstractBuild<?, ?> b = project.getLastBuild(); b != null && b.isBuilding(); b = b.getPreviousBuild()) {
+            current.skip.add(b.getNumber());
+        }
+        final int below = project.getNextBuildNumber();
+        final File buildsDir = project.getBuildDir();
+        final Set<Integer> skip = new HashSet<Integer>(current.skip);
+
+        rebuild = current;
+        correct = compactedCorrect;
+        incorrect = compactedIncorrect;
+
+        GuessingBuildScanner.COORDINATORS.submit(new Runnable() {
+            @Override
+            public void run() {
+                SortedMap<Integer, long[]> scanned;
+                try {
+                    long start = System.currentTimeMillis();
+                    scanned = GuessingBuildScanner.scan(buildsDir, skip, below, current.progress);
+                    LOGGER.log(Level.FINE, "Scanned {0} build records of {1} in {2} ms",
+                            new Object[] { current.progress.getTotal(), project.getFullName(), System.currentTimeMillis() - start });
+                } catch (InterruptedException e) {
+                    LOGGER.log(Level.WARNING, "Interrupted while rebuilding the guessing statistics of " + project.getFullName(), e);
+                    scanned = new TreeMap<Integer, long[]>();
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to rebuild the guessing statistics of " + project.getFullName(), e);
+                    scanned = new TreeMap<Integer, long[]>();
+                }
+                finishRebuild(current, scanned);
+            }
+        });
+    }
+
+    private void finishRebuild(Rebuild current, SortedMap<Integer, long[]> scanned) {
+        synchronized (this) {
+            SortedMap<Integer, long[]> builds = new TreeMap<Integer, long[]>();
+            for (Map.Entry<Integer, long[]> build : scanned.entrySet()) {
+                if (!current.skip.contains(build.getKey())) {
+                    builds.put(build.getKey(), build.getValue());
+                }
+            }
+            builds.putAll(current.live);
+
+            long correctCnt = compactedCorrect, incorrectCnt = compactedIncorrect;
+            GuessingTrend rebuilt = new GuessingTrend();
+            GuessingWindows rebuiltWindows = new GuessingWindows();
+            for (Map.Entry<Integer, long[]> build : builds.entrySet()) {
+                long[] counts = build.getValue();
+                correctCnt += counts[0];
+                incorrectCnt += counts[1];
+                rebuilt.add(build.getKey(), counts[0], counts[1]);
+                rebuiltWindows.add(build.getKey(), counts[2], counts[0], counts[1]);
+            }
+            correct = correctCnt;
+            incorrect = incorrectCnt;
+            trend = rebuilt;
+            windows = rebuiltWindows;
+            lastUpdated = System.currentTimeMillis();
+            rebuild = null;
+            trySave();
+        }
+        GuessingLeaderboard.get().update(project, this);
+    }
+
+    /**
+     * @return the progress of the rebuild in progress, or null if the statistics are complete
+     */
+    synchronized GuessingBuildScanner.Progress getRebuildProgress() {
+        return rebuild == null ? null : rebuild.progress;
+    }
+
+    /**
+     * @param build the build
+     * @return the number of correct and incorrect guesses made in the build, including batch rounds
+     */
+    static int[] count(AbstractBuild<?,?> build) {
+        GuessingBuildSummary summary = GuessingBuildSummary.get(build);
+        return new int[] { summary.getCorrect(), summary.getIncorrect() };
+    }
+
+    /**
+     * @return when the build completed, in milliseconds since the epoch
+     */
+    static long getCompleted(AbstractBuild<?,?> build) {
+        return build.getTimeInMillis() + build.getDuration();
+    }
+
+    /**
+     * @param build the build
+     * @return the number of guesses made in the build so far, including batch rounds
+     */
+    static int countGuesses(AbstractBuild<?,?> build) {
+        return GuessingBuildSummary.get(build).getGuesses();
+    }
+
+    public synchronized long getCorrect() {
+        return correct;
+    }
+
+    public synchronized long getIncorrect() {
+        return incorrect;
+    }
+
+    /**
+     * @return the number of correct guesses of deleted builds, included in {@link #getCorrect()}
+     */
+    public synchronized long getCompactedCorrect() {
+        return compactedCorrect;
+    }
+
+    /**
+     * @return the number of incorrect guesses of deleted builds, included in {@link #getIncorrect()}
+     */
+    public synchronized long getCompactedIncorrect() {
+        return compactedIncorrect;
+    }
+
+    /**
+     * @return the number of deleted builds with guesses
+     */
+    public synchronized long getCompactedBuilds() {
+        return compactedBuilds;
+    }
+
+    /**
+     * @return the hit rate over time
+     */
+    public synchronized GuessingTrend getTrend() {
+        return trend;
+    }
+
+    /**
+     * @return the guesses of the builds completed within the last hour
+     */
+    public synchronized GuessingWindows.Counts getLastHour() {
+        return windows.getLastHour(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the guesses of the builds completed within the last day
+     */
+    public synchronized GuessingWindows.Counts getLastDay() {
+        return windows.getLastDay(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the guesses of the last {@value GuessingWindows#BUILDS} builds with guesses to complete
+     */
+    public synchronized GuessingWindows.Counts getLastBuilds() {
+        return windows.getLastBuilds();
+    }
+
+    /**
+     * @return when the statistics last changed, in milliseconds since the epoch
+     */
+    public synchronized long getLastUpdated() {
+        return lastUpdated;
+    }
+
+    private void trySave() {
+        try {
+            save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the guessing statistics of " + project.getFullName(), e);
+        }
+    }
+
+    @Override
+    public synchronized void save() throws IOException {
+        if (BulkChange.contains(this)) {
+            return;
+        }
+        getConfigFile(project).write(this);
+    }
+}
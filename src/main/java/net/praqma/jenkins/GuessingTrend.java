@@ -0,0 +1,224 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.util.ChartUtil;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+/**
+ * The hit rate of a project over time, kept small no matter how long the history is.
+ *
+ * Every completed build is added as it completes. Each point of the series covers the same number of consecutive
+ * builds. When the series grows beyond {@link #MAX_POINTS}, neighbouring points are merged and every point from then
+ * on covers twice as many builds. The rendered JSON and chart are cached until the next build is added.
+ *
+ * Unlike the totals, the trend does not keep the points of deleted builds across a rebuild of the statistics, which
+ * only finds the builds still on disk.
+ *
+ * @author Praqma
+ */
+public class GuessingTrend {
+
+    static final int MAX_POINTS = 100;
+
+    static final int WIDTH = 500;
+    static final int HEIGHT = 200;
+
+    /**
+     * The number of builds each point covers.
+     */
+    private int width = 1;
+    private final List<Point> points = new ArrayList<Point>();
+
+    private transient String json;
+    private transient byte[] png;
+
+    /**
+     * The guesses of one or more consecutive builds.
+     */
+    public static class Point {
+        private int firstBuild;
+        private int lastBuild;
+        private int builds;
+        private long correct;
+        private long incorrect;
+
+        Point(int build) {
+            this.firstBuild = build;
+            this.lastBuild = build;
+        }
+
+        public int getFirstBuild() {
+            return firstBuild;
+        }
+
+        public int getLastBuild() {
+            return lastBuild;
+        }
+
+        public long getCorrect() {
+            return correct;
+        }
+
+        public long getIncorrect() {
+            return incorrect;
+        }
+
+        public double getHitRate() {
+            long total = correct + incorrect;
+            return total == 0 ? 0 : (double) correct / total;
+        }
+
+        String getLabel() {
+            return firstBuild == lastBuild ? "#" + firstBuild : "#" + firstBuild + "-" + lastBuild;
+        }
+
+        private void merge(Point other) {
+            firstBuild = Math.min(firstBuild, other.firstBuild);
+            lastBuild = Math.max(lastBuild, other.lastBuild);
+            builds += other.builds;
+            correct += other.correct;
+            incorrect += other.incorrect;
+        }
+    }
+
+    /**
+     * Adds a completed build to the series.
+     *
+     * @param build the build number
+     * @param correct the number of correct guesses in the build
+     * @param incorrect the number of incorrect guesses in the build
+     */
+    public synchronized void add(int build, long correct, long incorrect) {
+        Point last = points.isEmpty() ? null : points.get(points.size() - 1);
+        if (last == null || last.builds >= width) {
+            last = new Point(build);
+            points.add(last);
+        }
+        last.firstBuild = Math.min(last.firstBuild, build);
+        last.lastBuild = Math.max(last.lastBuild, build);
+        last.builds++;
+        last.correct += correct;
+        last.incorrect += incorrect;
+
+        if (points.size() > MAX_POINTS) {
+            downsample();
+        }
+        json = null;
+        png = null;
+    }
+
+    /**
+     * Merges every two neighbouring points, doubling the number of builds per point.
+     */
+    private void downsample() {
+        List<Point> merged = new ArrayList<Point>(points.size() / 2 + 1);
+        for (int i = 0; i < points.size(); i += 2) {
+            Point point = points.get(i);
+            if (i + 1 < points.size()) {
+                point.merge(points.get(i + 1));
+            }
+            merged.add(point);
+        }
+        points.clear();
+        points.addAll(merged);
+        width *= 2;
+    }
+
+    public synchronized List<Point> getPoints() {
+        return Collections.unmodifiableList(new ArrayList<Point>(points));
+    }
+
+    /**
+     * @return the series as JSON, cached until the next build is added
+     */
+    public synchronized String toJSON() {
+        if (json == null) {
+            JSONArray array = new JSONArray();
+            for (Point point : points) {
+                JSONObject o = new JSONObject();
+                o.put("firstBuild", point.firstBuild);
+                o.put("lastBuild", point.lastBuild);
+                o.put("correct", point.correct);
+                o.put("incorrect", point.incorrect);
+                o.put("hitRate", point.getHitRate());
+                array.add(o);
+            }
+            JSONObject o = new JSONObject();
+            o.put("buildsPerPoint", width);
+            o.put("points", array);
+            json = o.toString();
+        }
+        return json;
+    }
+
+    /**
+     * @return the series as a PNG chart, cached until the next build is added
+     * @throws IOException if the chart could not be encoded
+     */
+    public synchronized byte[] toPNG() throws IOException {
+        if (png == null) {
+            DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+            for (Point point : points) {
+                dataset.addValue(point.getHitRate() * 100, "Hit rate", point.getLabel());
+            }
+            JFreeChart chart = ChartFactory.createLineChart(null, "Builds", "Hit rate (%)", dataset, PlotOrientation.VERTICAL, false, false, false);
+            chart.setBackgroundPaint(Color.WHITE);
+            CategoryPlot plot = chart.getCategoryPlot();
+            plot.setBackgroundPaint(Color.WHITE);
+            plot.setRangeGridlinePaint(Color.LIGHT_GRAY);
+            plot.getDomainAxis().setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+            plot.getRangeAxis().setRange(0, 100);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ChartUtilities.writeChartAsPNG(out, chart, WIDTH, HEIGHT);
+            png = out.toByteArray();
+        }
+        return png;
+    }
+
+    /**
+     * @return whether charts can be drawn on this Jenkins
+     */
+    static boolean canDraw() {
+        return ChartUtil.awtProblemCause == null;
+    }
+}
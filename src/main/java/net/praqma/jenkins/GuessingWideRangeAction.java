@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.model.Action;
+
+/**
+ * The outcome of a {@link GuessingWideRangeBuilder} step. The distributions of its rounds are only kept for the
+ * project as a whole, see {@link GuessingSketches}.
+ *
+ * @author Praqma
+ */
+public class GuessingWideRangeAction implements Action {
+
+    private final int index;
+    private final long lower;
+    private final long upper;
+    private final long rounds;
+    private final long hits;
+    private final long medianGuess;
+    private final long medianNumber;
+
+    public GuessingWideRangeAction(int index, long lower, long upper, long rounds, long hits, long medianGuess, long medianNumber) {
+        this.index = index;
+        this.lower = lower;
+        this.upper = upper;
+        this.rounds = rounds;
+        this.hits = hits;
+        this.medianGuess = medianGuess;
+        this.medianNumber = medianNumber;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/guessing-game/images/64x64/guess.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Wide-range guesses " + index;
+    }
+
+    @Override
+    public String getUrlName() {
+        return "wideRange" + index;
+    }
+
+    public long getLower() {
+        return lower;
+    }
+
+    public long getUpper() {
+        return upper;
+    }
+
+    public long getRounds() {
+        return rounds;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the median guess, within {@value GuessingSketch#ACCURACY} relative error
+     */
+    public long getMedianGuess() {
+        return medianGuess;
+    }
+
+    /**
+     * @return the median rolled number, within {@value GuessingSketch#ACCURACY} relative error
+     */
+    public long getMedianNumber() {
+        return medianNumber;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - %s - %s", rounds, hits, medianGuess);
+    }
+}
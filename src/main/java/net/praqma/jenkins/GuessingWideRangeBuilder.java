@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import hudson.util.FormValidation;
+
+import java.io.IOException;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * Plays the guessing game over any range of long values, not just the faces of a die.
+ *
+ * With ranges this wide the rounds are neither kept per round nor in the column store. Their guesses and rolled
+ * numbers are summarized in {@link GuessingSketch}es instead, which take the same memory whatever the number of
+ * rounds, and added to the distributions of the project, see {@link GuessingSketches}.
+ *
+ * @author Praqma
+ */
+public class GuessingWideRangeBuilder extends Builder {
+
+    public final Long lower, upper, rounds;
+
+    @DataBoundConstructor
+    public GuessingWideRangeBuilder(final Long lower, final Long upper, final Long rounds) {
+        this.lower = lower;
+        this.upper = upper;
+        this.rounds = rounds;
+    }
+
+    @Override
+    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+        FormValidation validation = DescriptorImpl.checkBounds(lower, upper);
+        if(validation.kind == FormValidation.Kind.ERROR) {
+            listener.error(validation.getMessage());
+            return false;
+        }
+        if(rounds == null || rounds < 1) {
+            listener.error("The number of rounds must be positive");
+            return false;
+        }
+
+        GuessingRandom rnd = GuessingBuilder.createRandom(build, listener);
+        if(rnd == null) {
+            return false;
+        }
+        listener.getLogger().println(String.format("Playing %s rounds, guessing numbers between %s and %s", rounds, lower, upper));
+
+        long low = lower, high = upper, hits = 0;
+        GuessingSketch guesses = new GuessingSketch();
+        GuessingSketch numbers = new GuessingSketch();
+        for(long i = 0; i < rounds; i++) {
+            if((i & 0xfffff) == 0 && Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long guess = rnd.nextLong(low, high);
+            long number = rnd.nextLong(low, high);
+            guesses.add(guess);
+            numbers.add(number);
+            if(guess == number) {
+                hits++;
+            }
+        }
+
+        int index = build.getActions(GuessingWideRangeAction.class).size() + 1;
+        build.addAction(new GuessingWideRangeAction(index, low, high, rounds, hits, guesses.getQuantile(0.5), numbers.getQuantile(0.5)));
+        GuessingSketches.get(build.getProject()).record(guesses, numbers, hits);
+
+        listener.getLogger().println(String.format("%s correct guesses out of %s rounds", hits, rounds));
+        return true;
+    }
+
+    @Extension
+    public static class DescriptorImpl extends BuildStepDescriptor<Builder> {
+
+        @Override
+        public boolean isApplicable(Class<? extends AbstractProject> proj) {
+            return true;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Guess numbers in a wide range";
+        }
+
+        public FormValidation doCheckLower(@QueryParameter Long lower, @QueryParameter Long upper) {
+            return checkBounds(lower, upper);
+        }
+
+        public FormValidation doCheckUpper(@QueryParameter Long lower, @QueryParameter Long upper) {
+            return checkBounds(lower, upper);
+        }
+
+        public FormValidation doCheckRounds(@QueryParameter Long rounds) {
+            if(rounds != null && rounds < 1) {
+                return FormValidation.error("Has to be positive");
+            }
+            return FormValidation.ok();
+        }
+
+        static FormValidation checkBounds(Long lower, Long upper) {
+            if(lower == null || upper == null) {
+                return FormValidation.error("Both bounds must be configured");
+            }
+            if(lower > upper) {
+                return FormValidation.error("Lower bound is higher than upper bound");
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The guesses of a project over the last hour, the last day and the last {@value #BUILDS} builds.
+ *
+ * Each window is a ring buffer of a fixed number of buckets, so keeping it up to date when a build completes and
+ * reading it are both linear in the number of buckets, and its size does not grow with the history. The time windows
+ * are as precise as their buckets: a minute for the last hour, an hour for the last day.
+ *
+ * Deleted builds are not taken out of their buckets. A rebuild of the statistics starts from empty windows, so after it
+ * they only cover the builds still on disk.
+ *
+ * Not thread safe, {@link GuessingStatistics} guards it.
+ *
+ * @author Praqma
+ */
+public class GuessingWindows {
+
+    static final int BUILDS = 100;
+
+    private final TimeWindow lastHour = new TimeWindow(TimeUnit.MINUTES.toMillis(1), 60);
+    private final TimeWindow lastDay = new TimeWindow(TimeUnit.HOURS.toMillis(1), 24);
+    private final BuildWindow lastBuilds = new BuildWindow(BUILDS);
+
+    /**
+     * @param build the build number
+     * @param completed when the build completed, in milliseconds since the epoch
+     * @param correct the number of correct guesses of the build
+     * @param incorrect the number of incorrect guesses of the build
+     */
+    void add(int build, long completed, long correct, long incorrect) {
+        lastHour.add(completed, correct, incorrect);
+        lastDay.add(completed, correct, incorrect);
+        lastBuilds.add(build, correct, incorrect);
+    }
+
+    /**
+     * @param now the current time, in milliseconds since the epoch
+     */
+    Counts getLastHour(long now) {
+        return lastHour.get(now);
+    }
+
+    /**
+     * @param now the current time, in milliseconds since the epoch
+     */
+    Counts getLastDay(long now) {
+        return lastDay.get(now);
+    }
+
+    Counts getLastBuilds() {
+        return lastBuilds.get();
+    }
+
+    /**
+     * The guesses within a window.
+     */
+    public static class Counts {
+        private final long correct;
+        private final long incorrect;
+
+        Counts(long correct, long incorrect) {
+            this.correct = correct;
+            this.incorrect = incorrect;
+        }
+
+        public long getCorrect() {
+            return correct;
+        }
+
+        public long getIncorrect() {
+            return incorrect;
+        }
+
+        /**
+         * @return the share of correct guesses, or 0 if there are none
+         */
+        public double getHitRate() {
+            long total = correct + incorrect;
+            return total == 0 ? 0 : (double) correct / total;
+        }
+    }
+
+    /**
+     * The guesses of the builds completed within a period, in buckets of equal length. A slot is reused for a later
+     * bucket once its own has fallen out of the window.
+     */
+    private static final class TimeWindow {
+        private final long bucketMillis;
+        private final long[] buckets;
+        private final long[] correct;
+        private final long[] incorrect;
+
+        TimeWindow(long bucketMillis, int size) {
+            this.bucketMillis = bucketMillis;
+            this.buckets = new long[size];
+            this.correct = new long[size];
+            this.incorrect = new long[size];
+        }
+
+        void add(long time, long correctCnt, long incorrectCnt) {
+            long bucket = time / bucketMillis;
+            int slot = (int) (bucket % buckets.length);
+            if (buckets[slot] != bucket) {
+                if (buckets[slot] > bucket) {
+                    // Already out of the window
+                    return;
+                }
+                buckets[slot] = bucket;
+                correct[slot] = 0;
+                incorrect[slot] = 0;
+            }
+            correct[slot] += correctCnt;
+            incorrect[slot] += incorrectCnt;
+        }
+
+        Counts get(long now) {
+            long current = now / bucketMillis;
+            long correctCnt = 0, incorrectCnt = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] > current - buckets.length && buckets[i] <= current) {
+                    correctCnt += correct[i];
+                    incorrectCnt += incorrect[i];
+                }
+            }
+            return new Counts(correctCnt, incorrectCnt);
+        }
+    }
+
+    /**
+     * The guesses of the last builds to complete, one slot per build.
+     */
+    private static final class BuildWindow {
+        private final int[] builds;
+        private final long[] correct;
+        private final long[] incorrect;
+        private int next;
+
+        BuildWindow(int size) {
+            this.builds = new int[size];
+            this.correct = new long[size];
+            this.incorrect = new long[size];
+        }
+
+        void add(int build, long correctCnt, long incorrectCnt) {
+            builds[next] = build;
+            correct[next] = correctCnt;
+            incorrect[next] = incorrectCnt;
+            next = (next + 1) % builds.length;
+        }
+
+        Counts get() {
+            long correctCnt = 0, incorrectCnt = 0;
+            for (int i = 0; i < builds.length; i++) {
+                correctCnt += correct[i];
+                incorrectCnt += incorrect[i];
+            }
+            return new Counts(correctCnt, incorrectCnt);
+        }
+    }
+}
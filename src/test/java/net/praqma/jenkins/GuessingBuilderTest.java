@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import hudson.matrix.AxisList;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixProject;
+import hudson.matrix.TextAxis;
+import hudson.model.Cause;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersAction;
+import hudson.model.StringParameterValue;
+import hudson.model.queue.QueueTaskFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * Runs the guessing game in a real Jenkins.
+ *
+ * @author Praqma
+ */
+public class GuessingBuilderTest {
+
+    private static final int EXECUTORS = 8;
+    private static final int BUILDS = 200;
+    private static final int ROUNDS = 100;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    /**
+     * Hundreds of builds of one project on several executors, all adding the recorder and recording their guesses
+     * at the same time.
+     */
+    @Test
+    public void concurrentBuildsRegisterOneRecorderAndLoseNoGuesses() throws Exception {
+        j.jenkins.setNumExecutors(EXECUTORS);
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.setConcurrentBuild(true);
+        project.getBuildersList().add(new GuessingBuilder(1, 6));
+        project.getBuildersList().add(new GuessingBuilder(1, 6, ROUNDS));
+
+        GuessingCounters counters = GuessingCounters.get();
+        long countersBefore = counters.getCorrect() + counters.getIncorrect();
+
+        List<QueueTaskFuture<FreeStyleBuild>> futures = new ArrayList<QueueTaskFuture<FreeStyleBuild>>();
+        for (int i = 0; i < BUILDS; i++) {
+            // A distinct seed per build, or the queue would fold the builds into one
+            futures.add(project.scheduleBuild2(0, new Cause.UserIdCause(),
+                    new ParametersAction(new StringParameterValue(GuessingSeedAction.PARAMETER, String.valueOf(i)))));
+        }
+
+        long correct = 0, incorrect = 0;
+        for (QueueTaskFuture<FreeStyleBuild> future : futures) {
+            FreeStyleBuild build = future.get();
+            GuessingBuildSummary summary = GuessingBuildSummary.get(build);
+            assertEquals(build.getFullDisplayName(), 1 + ROUNDS, summary.getGuesses());
+            correct += summary.getCorrect();
+            incorrect += summary.getIncorrect();
+        }
+
+        assertEquals(BUILDS, project.getBuilds().size());
+        assertEquals(1, project.getPublishersList().getAll(GuessingRecorder.class).size());
+
+        GuessingStatistics statistics = GuessingStatistics.get(project);
+        while (statistics.getRebuildProgress() != null) {
+            Thread.sleep(10);
+        }
+        assertEquals(correct, statistics.getCorrect());
+        assertEquals(incorrect, statistics.getIncorrect());
+        assertEquals(BUILDS * (1 + ROUNDS), counters.getCorrect() + counters.getIncorrect() - countersBefore);
+
+        // The recorder must also have been saved only once
+        FreeStyleProject reloaded = (FreeStyleProject) project.getConfigFile().read();
+        assertEquals(1, reloaded.getPublishersList().getAll(GuessingRecorder.class).size());
+    }
+
+    /**
+     * The configurations of a matrix project share the publishers of the project, and are recreated when the axes
+     * change, so the recorder has to be added to the matrix project.
+     */
+    @Test
+    public void matrixBuildsAddTheRecorderToTheMatrixProject() throws Exception {
+        MatrixProject project = j.createMatrixProject();
+        project.setAxes(new AxisList(new TextAxis("dice", "a", "b")));
+        project.getBuildersList().add(new GuessingBuilder(1, 6));
+        // Mostly wrong guesses make the build unstable, so only wait for it
+        project.scheduleBuild2(0).get();
+
+        assertEquals(1, project.getPublishersList().getAll(GuessingRecorder.class).size());
+        MatrixProject reloaded = (MatrixProject) project.getConfigFile().read();
+        assertEquals(1, reloaded.getPublishersList().getAll(GuessingRecorder.class).size());
+
+        // A new axis value adds a configuration, which still gets its guesses aggregated
+        project.setAxes(new AxisList(new TextAxis("dice", "a", "b", "c")));
+        MatrixBuild build = project.scheduleBuild2(0).get();
+        assertEquals(1, project.getPublishersList().getAll(GuessingRecorder.class).size());
+        GuessingMatrixAction action = build.getAction(GuessingMatrixAction.class);
+        assertNotNull(action);
+        assertEquals(3, action.getTotal().getCorrect() + action.getTotal().getIncorrect());
+    }
+}
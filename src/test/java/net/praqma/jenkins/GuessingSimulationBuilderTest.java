@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Praqma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.praqma.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.Cause;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersAction;
+import hudson.model.Result;
+import hudson.model.StringParameterValue;
+import hudson.model.labels.LabelAtom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * Plays distributed simulations on local agents.
+ *
+ * @author Praqma
+ */
+public class GuessingSimulationBuilderTest {
+
+    private static final long ROUNDS = 1000003;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void distributedRoundsAddUpAndReplay() throws Exception {
+        LabelAtom label = new LabelAtom("simulation");
+        j.createOnlineSlave(label);
+        j.createOnlineSlave(label);
+
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.getBuildersList().add(new GuessingSimulationBuilder(1, 6, ROUNDS, 2, true, label.getName()));
+
+        GuessingSimulationAction first = simulate(project, "42");
+        assertTrue(first.isDistributed());
+        assertEquals("One shard per agent", 2, first.getThreads());
+        assertEquals(ROUNDS, first.getResult().getRounds());
+        long rolled = 0;
+        for (int number = 1; number <= 6; number++) {
+            rolled += first.getResult().getRolled(number);
+        }
+        assertEquals(ROUNDS, rolled);
+
+        GuessingSimulationAction replay = simulate(project, "42");
+        assertEquals(ROUNDS, replay.getResult().getRounds());
+        assertEquals("The same seed on the same agents plays the same rounds", first.getResult().getHits(), replay.getResult().getHits());
+    }
+
+    @Test
+    public void masterIsNotAnAgent() throws Exception {
+        LabelAtom label = new LabelAtom("simulation");
+        j.jenkins.setLabelString(label.getName());
+        j.createOnlineSlave(label);
+
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.getBuildersList().add(new GuessingSimulationBuilder(1, 6, ROUNDS, 1, true, label.getName()));
+
+        GuessingSimulationAction action = simulate(project, "7");
+        assertEquals(1, action.getThreads());
+        assertEquals(ROUNDS, action.getResult().getRounds());
+    }
+
+    @Test
+    public void failsWithoutAgents() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.getBuildersList().add(new GuessingSimulationBuilder(1, 6, ROUNDS, 1, true, "nowhere"));
+        j.assertBuildStatus(Result.FAILURE, project.scheduleBuild2(0).get());
+    }
+
+    @Test
+    public void withoutLabelRunsOnTheAgentOfTheBuild() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.getBuildersList().add(new GuessingSimulationBuilder(1, 6, ROUNDS, 1, true, null));
+        j.assertBuildStatus(Result.FAILURE, project.scheduleBuild2(0).get());
+
+        project.setAssignedNode(j.createOnlineSlave());
+        GuessingSimulationAction action = simulate(project, "7");
+        assertEquals(1, action.getThreads());
+        assertEquals(ROUNDS, action.getResult().getRounds());
+    }
+
+    private GuessingSimulationAction simulate(FreeStyleProject project, String seed) throws Exception {
+        FreeStyleBuild build = j.assertBuildStatusSuccess(project.scheduleBuild2(0, new Cause.UserIdCause(),
+                new ParametersAction(new StringParameterValue(GuessingSeedAction.PARAMETER, seed))));
+        return build.getAction(GuessingSimulationAction.class);
+    }
+}